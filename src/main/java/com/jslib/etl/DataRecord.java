@@ -1,22 +1,51 @@
 package com.jslib.etl;
 
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 import com.jslib.util.Types;
 
 /**
- * Data record is a row from data table. It is a dictionary of column names used as key and related table row values.
+ * Data record is a row from data table. Record values are stored in an array indexed by column ordinal, as defined by
+ * record schema - see {@link RecordSchema}. Records created by extractors and tasks share the same sealed schema and are
+ * accessed by ordinal; name based access is kept for compatibility and resolves column ordinal on every call.
+ * 
+ * Record created with default constructor has its own open schema that grows with every new column name.
  * 
  * @author Iulian Rotaru
  */
 public class DataRecord implements IQueueElement {
-	private final Map<String, Object> values = new HashMap<>();
+	private final RecordSchema schema;
+	private Object[] values;
+
+	public DataRecord() {
+		this(new RecordSchema());
+	}
+
+	public DataRecord(RecordSchema schema) {
+		this.schema = schema;
+		this.values = new Object[schema.size()];
+	}
+
+	public RecordSchema getSchema() {
+		return schema;
+	}
+
+	public Object get(int ordinal) {
+		return values[ordinal];
+	}
+
+	public void set(int ordinal, Object value) {
+		values[ordinal] = value;
+	}
+
+	public int size() {
+		return schema.size();
+	}
 
 	public void put(IDataReference reference, IDataValue value) {
 		if (!reference.isArray()) {
-			this.values.put(reference.columnName(), object(value));
+			put(reference.columnName(), object(value));
 			return;
 		}
 
@@ -26,38 +55,112 @@ public class DataRecord implements IQueueElement {
 			throw new IllegalStateException("Data reference not consistent with data value.");
 		}
 		for (int i = 0; i < columnNames.length; ++i) {
-			this.values.put(columnNames[i], values[i]);
+			put(columnNames[i], values[i]);
 		}
 	}
 
 	public IDataValue get(IDataReference reference) {
 		if (!reference.isArray()) {
-			return value(values.get(reference.columnName()));
+			return value(get(reference.columnName()));
 		}
 
 		String[] columnNames = reference.columnNames();
 		Object[] values = new Object[columnNames.length];
 		for (int i = 0; i < columnNames.length; ++i) {
-			values[i] = this.values.get(columnNames[i]);
+			values[i] = get(columnNames[i]);
 		}
 		return value(values);
 	}
 
+	/**
+	 * Set referenced columns value using ordinals resolved from this record schema, see
+	 * {@link RecordSchema#ordinals(IDataReference)}.
+	 * 
+	 * @param reference data reference,
+	 * @param ordinals referenced columns ordinals,
+	 * @param value data value, single or array value, accordingly data reference.
+	 */
+	public void put(IDataReference reference, int[] ordinals, IDataValue value) {
+		if (!reference.isArray()) {
+			values[ordinals[0]] = object(value);
+			return;
+		}
+
+		Object[] values = array(value);
+		if (ordinals.length != values.length) {
+			throw new IllegalStateException("Data reference not consistent with data value.");
+		}
+		for (int i = 0; i < ordinals.length; ++i) {
+			this.values[ordinals[i]] = values[i];
+		}
+	}
+
+	/**
+	 * Get referenced columns value using ordinals resolved from this record schema, see
+	 * {@link RecordSchema#ordinals(IDataReference)}. Columns not defined by schema have null value.
+	 * 
+	 * @param reference data reference,
+	 * @param ordinals referenced columns ordinals.
+	 * @return data value, single or array value, accordingly data reference.
+	 */
+	public IDataValue get(IDataReference reference, int[] ordinals) {
+		if (!reference.isArray()) {
+			return value(ordinals[0] != -1 ? values[ordinals[0]] : null);
+		}
+
+		Object[] values = new Object[ordinals.length];
+		for (int i = 0; i < ordinals.length; ++i) {
+			values[i] = ordinals[i] != -1 ? this.values[ordinals[i]] : null;
+		}
+		return value(values);
+	}
+
+	/**
+	 * Set column value by name. If record schema is open, column is added to schema if not already defined.
+	 * 
+	 * @param columnName column name,
+	 * @param value column value.
+	 * @throws IllegalStateException if record schema is sealed and does not define requested column.
+	 */
 	public void put(String columnName, Object value) {
-		values.put(columnName, value);
+		int ordinal = schema.ordinal(columnName);
+		if (ordinal == -1) {
+			ordinal = schema.add(columnName);
+		}
+		if (ordinal >= values.length) {
+			values = Arrays.copyOf(values, Math.max(ordinal + 1, values.length * 2));
+		}
+		values[ordinal] = value;
 	}
 
+	/**
+	 * Get column value by name or null if record schema does not define requested column.
+	 * 
+	 * @param columnName column name.
+	 * @return column value, possible null.
+	 */
 	public Object get(String columnName) {
-		return values.get(columnName);
+		int ordinal = schema.ordinal(columnName);
+		return ordinal != -1 && ordinal < values.length ? values[ordinal] : null;
 	}
 
 	public Collection<String> columnNames() {
-		return values.keySet();
+		return schema.columnNames();
 	}
 
 	@Override
 	public String toString() {
-		return "DataRecord [values=" + values + "]";
+		StringBuilder builder = new StringBuilder("DataRecord [values={");
+		for (int i = 0; i < schema.size(); ++i) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(schema.columnName(i));
+			builder.append('=');
+			builder.append(i < values.length ? values[i] : null);
+		}
+		builder.append("}]");
+		return builder.toString();
 	}
 
 	public static IDataValue value(Object value) {
@@ -1,8 +1,11 @@
 package com.jslib.etl;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+import com.jslib.etl.meta.MetaProperties;
 import com.jslib.etl.meta.ServiceType;
 
 public interface IDataSource extends AutoCloseable {
@@ -13,16 +16,76 @@ public interface IDataSource extends AutoCloseable {
 
 	IExtractor extractor(String tableName, List<String> columnNames, String... whereClause);
 
+	/**
+	 * Create extractor configured from task properties, e.g. extractor mode.
+	 * 
+	 * @param tableName source table name,
+	 * @param columnNames names of the columns to extract,
+	 * @param properties task properties,
+	 * @param whereClause optional filter.
+	 * @return extractor instance.
+	 */
+	IExtractor extractor(String tableName, List<String> columnNames, MetaProperties properties, String... whereClause);
+
 	ILoader loader(String tableName);
 
 	ILoader loader(String tableName, boolean speedOptimization);
 
+	/**
+	 * Create loader configured from task properties, e.g. loader mode.
+	 * 
+	 * @param tableName destination table name,
+	 * @param properties task properties.
+	 * @return loader instance.
+	 */
+	ILoader loader(String tableName, MetaProperties properties);
+
 	String testConnection();
 	
 	Object lastInsertedId(String tableName);
 	
 	Object execute(String query) throws SQLException;
 
+	/**
+	 * Execute parameterized SQL statement, binding parameters in order. Returns the first column of the first selected row,
+	 * null if no row selected, or updated rows count if statement is not a query.
+	 * 
+	 * @param query SQL statement with parameter placeholders,
+	 * @param parameters parameter values, possible null.
+	 * @return selected value or updated rows count.
+	 * @throws SQLException if statement execution fails.
+	 */
+	Object execute(String query, Object... parameters) throws SQLException;
+
+	/**
+	 * Execute SQL statements as a single batch, in one transaction. If any statement fails transaction is rolled back.
+	 * Queries, e.g. <code>SELECT setval(...)</code>, are executed in statements order, in the same transaction, and their
+	 * results are discarded. Note that some statements cannot be executed or rolled back in a transaction, e.g. DDL
+	 * statements on MySQL. Statements that cannot run inside a transaction block, e.g. <code>VACUUM</code>, are executed in
+	 * auto commit mode if they are the single statement and rejected otherwise.
+	 * 
+	 * @param statements SQL statements, without parameters.
+	 * @return updated rows count for every statement, in statements order; {@link java.sql.Statement#SUCCESS_NO_INFO} for
+	 *         queries.
+	 * @throws EtlException if a statement that cannot run inside a transaction is part of a multi statements batch.
+	 * @throws SQLException if a statement execution fails.
+	 */
+	int[] executeBatch(List<String> statements) throws SQLException;
+
+	/**
+	 * Look up values for a collection of keys from a table, using a single query for a batch of keys. Keys are split into
+	 * batches of data source configured size. Returned map has the requested key instances as keys, so that caller can
+	 * scatter values back by the keys it provided; keys not found in table are not present in returned map.
+	 * 
+	 * @param tableName table name,
+	 * @param keyColumn name of the key column,
+	 * @param valueColumn name of the looked up value column,
+	 * @param keys distinct, not null keys.
+	 * @return found values mapped by requested keys.
+	 * @throws SQLException if query execution fails.
+	 */
+	Map<Object, Object> lookup(String tableName, String keyColumn, String valueColumn, Collection<?> keys) throws SQLException;
+
 	char getEscapeChar();
 	
 }
@@ -1,5 +1,26 @@
 package com.jslib.etl;
 
-public interface IExtractor extends Iterable<DataRecord> {
+import java.util.Iterator;
+
+public interface IExtractor extends Iterable<DataRecord>, AutoCloseable {
+
+	/**
+	 * Get extracted records grouped into columnar record batches. Default implementation groups records from
+	 * {@link #iterator()} into batches with object vectors; implementations able to read values directly into primitive
+	 * vectors should override it. Caller should use either this method or {@link #iterator()}, not both.
+	 * 
+	 * @param capacity maximum number of records per batch.
+	 * @return record batches iterator.
+	 */
+	default Iterator<RecordBatch> batches(int capacity) {
+		return RecordBatch.batches(iterator(), capacity);
+	}
+
+	/**
+	 * Release resources held by extractor, if any. Default implementation does nothing.
+	 */
+	@Override
+	default void close() {
+	}
 
 }
@@ -11,5 +11,18 @@ public interface ILoader extends AutoCloseable {
 	 * @throws SQLException 
 	 */
 	void write(DataRecord record) throws SQLException;
+
+	/**
+	 * Write all records from a columnar record batch. Default implementation writes batch rows one by one, see
+	 * {@link #write(DataRecord)}; implementations able to bind column vectors directly should override it.
+	 * 
+	 * @param batch record batch.
+	 * @throws SQLException if write fails.
+	 */
+	default void write(RecordBatch batch) throws SQLException {
+		for (int row = 0; row < batch.size(); ++row) {
+			write(batch.record(row));
+		}
+	}
 	
 }
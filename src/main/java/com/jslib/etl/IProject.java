@@ -16,6 +16,15 @@ public interface IProject extends AutoCloseable {
 	Object getVariableValue(String name);
 	
 	List<ITask> getTasks();
+
+	/**
+	 * Execute project tasks. If project constant <code>maxParallelTasks</code> is greater than one, independent tasks are
+	 * executed concurrently, respecting tasks dependencies; otherwise tasks are executed sequentially, in declaration order.
+	 * 
+	 * @return true if all tasks completed successfully.
+	 * @throws InterruptedException if current thread is interrupted while waiting for tasks completion.
+	 */
+	boolean execute() throws InterruptedException;
 	
 	void onPreExecuteTask(String taskName);
 
@@ -4,5 +4,32 @@ package com.jslib.etl;
 public interface ITransformer {
 
 	IDataValue transform(IDataValue value);
-	
+
+	/**
+	 * Transform a single value, without data value wrapper. Used for transfer rules with single column source and
+	 * destination. Default implementation wraps value and delegates {@link #transform(IDataValue)}.
+	 * 
+	 * @param value source value, possible null.
+	 * @return transformed value.
+	 */
+	default Object apply(Object value) {
+		return DataRecord.object(transform(DataRecord.value(value)));
+	}
+
+	/**
+	 * Transform a column from source record batch into destination batch column, for all source batch rows. Default
+	 * implementation allocates object vector for destination column and invokes {@link #apply(Object)} for every row.
+	 * 
+	 * @param source source record batch,
+	 * @param sourceColumn source column ordinal,
+	 * @param destination destination record batch,
+	 * @param destinationColumn destination column ordinal.
+	 */
+	default void transform(RecordBatch source, int sourceColumn, RecordBatch destination, int destinationColumn) {
+		destination.allocate(destinationColumn, RecordBatch.VectorType.OBJECT);
+		for (int row = 0; row < source.size(); ++row) {
+			destination.set(destinationColumn, row, apply(source.get(sourceColumn, row)));
+		}
+	}
+
 }
@@ -44,11 +44,9 @@ public class Main {
 				project.parseArguments(meta.getArguments(), arguments);
 				project.parseMeta(meta);
 
-				for (ITask task : project.getTasks()) {
-					if (!task.execute()) {
-						System.exit(2);
-						return;
-					}
+				if (!project.execute()) {
+					System.exit(2);
+					return;
 				}
 			}
 
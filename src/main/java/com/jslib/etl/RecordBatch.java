@@ -0,0 +1,325 @@
+package com.jslib.etl;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Columnar batch of records sharing the same {@link RecordSchema}. Every schema column has a value vector: numeric
+ * columns use primitive <code>int[]</code>, <code>long[]</code> or <code>double[]</code> vectors with a null bitmap, a
+ * bit per row, and all other columns use an object vector. Vectors are allocated by batch producer, see
+ * {@link #allocate(int, VectorType)}; a column without vector has only null values.
+ * <p>
+ * Record batch is not thread safe; it is filled by a single producer and handed over to consumer, e.g. loader thread,
+ * through a queue.
+ *
+ * @author Iulian Rotaru
+ */
+public class RecordBatch implements IQueueElement {
+	/**
+	 * Column vector type.
+	 *
+	 * @author Iulian Rotaru
+	 */
+	public enum VectorType {
+		INT, LONG, DOUBLE, OBJECT
+	}
+
+	private final RecordSchema schema;
+	private final int capacity;
+	private final VectorType[] types;
+	private final Object[] vectors;
+	/** Null bitmaps for primitive vectors, a bit per row; item is null for object vectors. */
+	private final long[][] nulls;
+
+	private int size;
+
+	public RecordBatch(RecordSchema schema, int capacity) {
+		this.schema = schema;
+		this.capacity = capacity;
+		this.types = new VectorType[schema.size()];
+		this.vectors = new Object[schema.size()];
+		this.nulls = new long[schema.size()][];
+	}
+
+	public RecordSchema getSchema() {
+		return schema;
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Get the number of rows stored in this batch.
+	 *
+	 * @return rows count.
+	 */
+	public int size() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		if (size < 0 || size > capacity) {
+			throw new IllegalArgumentException("Invalid record batch size " + size + " for capacity " + capacity);
+		}
+		this.size = size;
+	}
+
+	/**
+	 * Get vector type for requested column or null if column vector is not allocated.
+	 *
+	 * @param column column ordinal.
+	 * @return column vector type, possible null.
+	 */
+	public VectorType type(int column) {
+		return types[column];
+	}
+
+	/**
+	 * Allocate value vector of requested type for a column, replacing existing vector, if any.
+	 *
+	 * @param column column ordinal,
+	 * @param type vector type.
+	 */
+	public void allocate(int column, VectorType type) {
+		types[column] = type;
+		switch (type) {
+		case INT:
+			vectors[column] = new int[capacity];
+			break;
+
+		case LONG:
+			vectors[column] = new long[capacity];
+			break;
+
+		case DOUBLE:
+			vectors[column] = new double[capacity];
+			break;
+
+		default:
+			vectors[column] = new Object[capacity];
+		}
+		nulls[column] = type != VectorType.OBJECT ? new long[(capacity + 63) >>> 6] : null;
+	}
+
+	/**
+	 * Share column vector from source batch, without copying values. Source batch should have the same capacity and should
+	 * not be changed after sharing.
+	 *
+	 * @param column column ordinal,
+	 * @param source source batch,
+	 * @param sourceColumn column ordinal on source batch.
+	 */
+	public void share(int column, RecordBatch source, int sourceColumn) {
+		if (source.capacity != capacity) {
+			throw new IllegalArgumentException("Record batches capacity mismatch.");
+		}
+		types[column] = source.types[sourceColumn];
+		vectors[column] = source.vectors[sourceColumn];
+		nulls[column] = source.nulls[sourceColumn];
+	}
+
+	/**
+	 * Allocate object vector for a column and set all rows to the same value.
+	 *
+	 * @param column column ordinal,
+	 * @param value column value, possible null.
+	 */
+	public void fill(int column, Object value) {
+		allocate(column, VectorType.OBJECT);
+		Object[] vector = (Object[]) vectors[column];
+		for (int i = 0; i < capacity; ++i) {
+			vector[i] = value;
+		}
+	}
+
+	public int[] ints(int column) {
+		return (int[]) vectors[column];
+	}
+
+	public long[] longs(int column) {
+		return (long[]) vectors[column];
+	}
+
+	public double[] doubles(int column) {
+		return (double[]) vectors[column];
+	}
+
+	public Object[] objects(int column) {
+		return (Object[]) vectors[column];
+	}
+
+	public boolean isNull(int column, int row) {
+		if (types[column] == null) {
+			return true;
+		}
+		if (types[column] == VectorType.OBJECT) {
+			return ((Object[]) vectors[column])[row] == null;
+		}
+		return (nulls[column][row >>> 6] & (1L << row)) != 0;
+	}
+
+	public void setNull(int column, int row) {
+		if (types[column] == VectorType.OBJECT) {
+			((Object[]) vectors[column])[row] = null;
+			return;
+		}
+		nulls[column][row >>> 6] |= 1L << row;
+	}
+
+	public void setInt(int column, int row, int value) {
+		((int[]) vectors[column])[row] = value;
+		nulls[column][row >>> 6] &= ~(1L << row);
+	}
+
+	public void setLong(int column, int row, long value) {
+		((long[]) vectors[column])[row] = value;
+		nulls[column][row >>> 6] &= ~(1L << row);
+	}
+
+	public void setDouble(int column, int row, double value) {
+		((double[]) vectors[column])[row] = value;
+		nulls[column][row >>> 6] &= ~(1L << row);
+	}
+
+	/**
+	 * Get column value, boxed if column has primitive vector.
+	 *
+	 * @param column column ordinal,
+	 * @param row row index.
+	 * @return column value, possible null.
+	 */
+	public Object get(int column, int row) {
+		if (isNull(column, row)) {
+			return null;
+		}
+		switch (types[column]) {
+		case INT:
+			return ((int[]) vectors[column])[row];
+
+		case LONG:
+			return ((long[]) vectors[column])[row];
+
+		case DOUBLE:
+			return ((double[]) vectors[column])[row];
+
+		default:
+			return ((Object[]) vectors[column])[row];
+		}
+	}
+
+	/**
+	 * Set column value. For primitive vectors value should be a number or null.
+	 *
+	 * @param column column ordinal,
+	 * @param row row index,
+	 * @param value column value, possible null.
+	 * @throws ClassCastException if column has primitive vector and value is not a number.
+	 */
+	public void set(int column, int row, Object value) {
+		if (value == null) {
+			setNull(column, row);
+			return;
+		}
+		switch (types[column]) {
+		case INT:
+			setInt(column, row, ((Number) value).intValue());
+			break;
+
+		case LONG:
+			setLong(column, row, ((Number) value).longValue());
+			break;
+
+		case DOUBLE:
+			setDouble(column, row, ((Number) value).doubleValue());
+			break;
+
+		default:
+			((Object[]) vectors[column])[row] = value;
+		}
+	}
+
+	/**
+	 * Get a data record with values from requested row. Returned record is a copy and has this batch schema.
+	 *
+	 * @param row row index.
+	 * @return row data record.
+	 */
+	public DataRecord record(int row) {
+		DataRecord record = new DataRecord(schema);
+		for (int column = 0; column < types.length; ++column) {
+			record.set(column, get(column, row));
+		}
+		return record;
+	}
+
+	/**
+	 * Get batch rows as data records list; records are created on the fly, see {@link #record(int)}.
+	 *
+	 * @return batch records.
+	 */
+	public List<DataRecord> records() {
+		return new AbstractList<DataRecord>() {
+			@Override
+			public DataRecord get(int index) {
+				return record(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "RecordBatch [schema=" + schema + ", size=" + size + "]";
+	}
+
+	/**
+	 * Group records from row iterator into record batches with object vectors. Batch schema is the schema of the first
+	 * record; records with other schema instance are copied by column names. Null records are not accepted.
+	 *
+	 * @param records records iterator,
+	 * @param capacity batch capacity.
+	 * @return record batches iterator.
+	 */
+	public static Iterator<RecordBatch> batches(Iterator<DataRecord> records, int capacity) {
+		return new Iterator<RecordBatch>() {
+			@Override
+			public boolean hasNext() {
+				return records.hasNext();
+			}
+
+			@Override
+			public RecordBatch next() {
+				if (!records.hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				DataRecord record = records.next();
+				RecordSchema schema = record.getSchema();
+				RecordBatch batch = new RecordBatch(schema, capacity);
+				for (int column = 0; column < schema.size(); ++column) {
+					batch.allocate(column, VectorType.OBJECT);
+				}
+
+				int row = 0;
+				for (;;) {
+					for (int column = 0; column < schema.size(); ++column) {
+						batch.objects(column)[row] = record.getSchema() == schema ? record.get(column) : record.get(schema.columnName(column));
+					}
+					if (++row == capacity || !records.hasNext()) {
+						break;
+					}
+					record = records.next();
+				}
+				batch.setSize(row);
+				return batch;
+			}
+		};
+	}
+}
@@ -0,0 +1,123 @@
+package com.jslib.etl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record schema maps column names to ordinals, that is, indices into {@link DataRecord} values array. A schema is created
+ * once per extractor or task and shared by all its records so that column names are hashed only once, when schema is
+ * created, and record values are accessed by index.
+ *
+ * A schema created from column names is sealed and cannot be changed; this is the schema shared by records. Schema
+ * created with default constructor is open and grows with every new column name; it is owned by a single record created
+ * without schema and is not thread safe.
+ *
+ * Column names list can contain duplicates, e.g. when the same source column is selected twice by extractor; in this case
+ * {@link #ordinal(String)} returns the first ordinal.
+ *
+ * @author Iulian Rotaru
+ */
+public class RecordSchema {
+	private final List<String> columnNames;
+	private final Map<String, Integer> ordinals;
+	private final boolean sealed;
+
+	/**
+	 * Create open schema, with no columns.
+	 */
+	public RecordSchema() {
+		this.columnNames = new ArrayList<>();
+		this.ordinals = new HashMap<>();
+		this.sealed = false;
+	}
+
+	/**
+	 * Create sealed schema with given column names, in order.
+	 *
+	 * @param columnNames column names.
+	 */
+	public RecordSchema(Collection<String> columnNames) {
+		this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+		this.ordinals = new HashMap<>();
+		for (int i = 0; i < this.columnNames.size(); ++i) {
+			this.ordinals.putIfAbsent(this.columnNames.get(i), i);
+		}
+		this.sealed = true;
+	}
+
+	/**
+	 * Get ordinal of the column with given name.
+	 *
+	 * @param columnName column name.
+	 * @return column ordinal or -1 if column is not defined by this schema.
+	 */
+	public int ordinal(String columnName) {
+		Integer ordinal = ordinals.get(columnName);
+		return ordinal != null ? ordinal : -1;
+	}
+
+	/**
+	 * Add column to open schema. Returns column ordinal, existing one if column is already defined.
+	 *
+	 * @param columnName column name.
+	 * @return column ordinal.
+	 * @throws IllegalStateException if this schema is sealed and column is not already defined.
+	 */
+	int add(String columnName) {
+		Integer ordinal = ordinals.get(columnName);
+		if (ordinal != null) {
+			return ordinal;
+		}
+		if (sealed) {
+			throw new IllegalStateException("Column " + columnName + " not defined by record schema " + columnNames);
+		}
+		ordinal = columnNames.size();
+		columnNames.add(columnName);
+		ordinals.put(columnName, ordinal);
+		return ordinal;
+	}
+
+	/**
+	 * Get ordinals for columns designated by data reference. Returned array has a single ordinal for object reference and
+	 * an ordinal for every column name for array reference. Ordinal is -1 for columns not defined by this schema.
+	 *
+	 * @param reference data reference.
+	 * @return referenced columns ordinals.
+	 */
+	public int[] ordinals(IDataReference reference) {
+		if (!reference.isArray()) {
+			return new int[] { ordinal(reference.columnName()) };
+		}
+		String[] columnNames = reference.columnNames();
+		int[] ordinals = new int[columnNames.length];
+		for (int i = 0; i < columnNames.length; ++i) {
+			ordinals[i] = ordinal(columnNames[i]);
+		}
+		return ordinals;
+	}
+
+	public String columnName(int ordinal) {
+		return columnNames.get(ordinal);
+	}
+
+	public List<String> columnNames() {
+		return sealed ? columnNames : Collections.unmodifiableList(columnNames);
+	}
+
+	public int size() {
+		return columnNames.size();
+	}
+
+	public boolean isSealed() {
+		return sealed;
+	}
+
+	@Override
+	public String toString() {
+		return "RecordSchema [columnNames=" + columnNames + "]";
+	}
+}
@@ -0,0 +1,29 @@
+package com.jslib.etl.impl;
+
+import com.jslib.etl.EtlException;
+
+/**
+ * Strategy used by SQL extractor to read source table. Is selected per task, using <code>extractorMode</code> task
+ * property; if not configured uses {@link #OFFSET}. Page based modes, {@link #OFFSET} and {@link #KEYSET}, can read pages
+ * ahead on a background thread if <code>extractorPrefetch</code> task property is set to the number of buffered pages.
+ * 
+ * @author Iulian Rotaru
+ */
+public enum ExtractorMode {
+	/** Read source table page by page using LIMIT with offset, or OFFSET ... FETCH NEXT on MSSQL. */
+	OFFSET,
+	/** Read source table page by page starting after last seen primary key, also known as seek method. */
+	KEYSET,
+	/** Read source table with a single result set kept open for the whole task, using driver specific fetch size. */
+	STREAM,
+	/** Split source table by partition column value ranges and read all partitions concurrently, on separated connections. */
+	PARTITION;
+
+	public static ExtractorMode forName(String mode) {
+		try {
+			return valueOf(mode.trim().toUpperCase());
+		} catch (Exception e) {
+			throw new EtlException("Unknown or misspelled extractor mode |%s|.", mode);
+		}
+	}
+}
@@ -1,20 +1,35 @@
 package com.jslib.etl.impl;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,7 +57,10 @@ public class Functions {
 	private final Converter converter;
 	private final Patterns patterns;
 	private final IProject project;
-	private final Map<String, Method> methods;
+	private final Map<String, MethodHandle> methods;
+	/** Names of the functions marked as pure, see {@link Pure}. */
+	private final Set<String> pureMethods;
+	private final Map<String, Chain> chains;
 
 	public Functions(IProject project) {
 		log.trace("Functions(IProject)");
@@ -50,11 +68,24 @@ public class Functions {
 		this.patterns = new Patterns();
 		this.project = project;
 		this.methods = new HashMap<>();
+		this.pureMethods = new HashSet<>();
+		this.chains = new ConcurrentHashMap<>();
 
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
 		for (Method method : getClass().getDeclaredMethods()) {
-			if (Modifier.isPrivate(method.getModifiers())) {
-				method.setAccessible(true);
-				methods.put(method.getName(), method);
+			if (Modifier.isPrivate(method.getModifiers()) && !method.isSynthetic()) {
+				try {
+					MethodHandle handle = lookup.unreflect(method);
+					handle = Modifier.isStatic(method.getModifiers()) ? handle : handle.bindTo(this);
+					// overloaded functions are distinguished by arity, e.g. timestamp with and without locale
+					methods.put(method.getName(), handle);
+					methods.put(method.getName() + '/' + method.getParameterCount(), handle);
+					if (method.isAnnotationPresent(Pure.class)) {
+						pureMethods.add(method.getName());
+					}
+				} catch (IllegalAccessException e) {
+					throw new EtlException(e);
+				}
 			}
 		}
 	}
@@ -69,78 +100,415 @@ public class Functions {
 		// translate to English and upper case on SELECT Floor FROM ngs.information
 		// timestamp by yyyy-MM-dd'T'HH:mm:ss on SELECT Timestamp FROM ngs.measures_inspectra ORDER BY Timestamp DESC LIMIT 1
 
+		// SQL expressions bind variables as statement parameters; function expressions have variables injected as text
 		int position = expression.indexOf(" on ");
 		if (position == -1) {
-			return invoke(expression, null);
+			return invoke(project.injectVariables(expression), null);
 		}
 
 		Object argument = executeSql(expression.substring(position + 4).trim());
-		expression = expression.substring(0, position).trim();
+		expression = project.injectVariables(expression.substring(0, position).trim());
 		return invoke(expression, argument);
 	}
 
-	// invoked by transformers and by above
+	// invoked by above; transformers use compiled chains, see compile(String)
 	public Object invoke(String expression, Object argument) {
-		// last inserted ID from commons.mission
-		// person name
-		// translate to English and upper case
-		// timestamp by yyyy-MM-dd'T'HH:mm:ss, ro-RO
-
-		String[] extraArguments = null;
-		String[] p = expression.split("\\s+(by|with|at|in)\\s+");
-		if (p.length == 2) {
-			extraArguments = p[1].split(",\\s*"); // yyyy-MM-dd'T'HH:mm:ss, ro-RO
-			expression = p[0]; // timestamp
-		} else {
-			extraArguments = new String[0];
-			p = expression.split("\\s+from\\s+");
+		return compile(expression).invoke(argument);
+	}
+
+	/**
+	 * Compile function expression into a chain of functions with arguments converted in advance. Compiled chains are cached
+	 * so that expressions are parsed only once.
+	 * 
+	 * @param expression function expression.
+	 * @return compiled chain.
+	 * @throws EtlException if a function from expression is not found or has not expected arguments.
+	 */
+	public Chain compile(String expression) {
+		return chains.computeIfAbsent(expression, Chain::new);
+	}
+
+	/**
+	 * Compiled function expression: a chain of functions invoked in sequence, every function getting as first argument the
+	 * value returned by previous one. Expression arguments are parsed and converted to function parameter types at
+	 * compile time and functions are composed into a single method handle. Between chained functions values are passed
+	 * with their declared types, so that primitive values are not boxed; only chain result is boxed, unless caller uses
+	 * primitive specialized {@link #invokeDouble(Object)} or {@link #invokeLong(Object)}.
+	 * <p>
+	 * Null propagates through chain: a null argument gives null result, without invoking chain functions. Primitive values
+	 * cannot be null so a null argument for primitive specialized invoke is still an error.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	public class Chain {
+		private final String expression;
+		/** Composed functions handle of type (Object)Object. */
+		private final MethodHandle handle;
+		/** Chain result type, primitive if last function returns a primitive. */
+		private final Class<?> returnType;
+		/** Composed functions handle of type (Object)double or null if chain result is not numeric primitive. */
+		private final MethodHandle doubleHandle;
+		/** Composed functions handle of type (Object)long or null if chain result is not integral primitive. */
+		private final MethodHandle longHandle;
+		/** Composed functions handle of type (double)double or null if chain is not a numeric operator on double values. */
+		private final MethodHandle doubleOperator;
+		/** Argument provided by expression itself, e.g. <code>last inserted ID from commons.mission</code>. */
+		private final Object expressionArgument;
+		/** True if all chain functions are pure and chain has no expression argument. */
+		private final boolean pure;
+		/** True if chain has last inserted ID function, whose result depends on records already loaded. */
+		private final boolean lastInsertedId;
+		/** Name of the lookup function, if chain is a single SQL or in memory lookup, otherwise null. */
+		private final String lookupFunction;
+		/** Converted arguments of the lookup function, if chain is a single lookup, otherwise null. */
+		private final Object[] lookupArguments;
+
+		private Chain(String expression) {
+			// last inserted ID from commons.mission
+			// person name
+			// translate to English and upper case
+			// timestamp by yyyy-MM-dd'T'HH:mm:ss, ro-RO
+
+			this.expression = expression;
+			String[] extraArguments = null;
+			String argument = null;
+			String[] p = expression.split("\\s+(by|with|at|in)\\s+");
 			if (p.length == 2) {
-				if (argument != null) {
-					throw new IllegalStateException("Argument provided by caller and by expression.");
+				extraArguments = p[1].split(",\\s*"); // yyyy-MM-dd'T'HH:mm:ss, ro-RO
+				expression = p[0]; // timestamp
+			} else {
+				extraArguments = new String[0];
+				p = expression.split("\\s+from\\s+");
+				if (p.length == 2) {
+					argument = p[1];
+					expression = p[0];
 				}
-				argument = p[1];
-				expression = p[0];
 			}
-		}
 
-		assert argument != null;
+			// last inserted ID
+			// person name
+			// translate to English and upper case
+			// timestamp by yyyy-MM-dd'T'HH:mm:ss
+
+			MethodHandle chain = null;
+			// the same chain but with first function parameter not adapted, used for primitive operator
+			MethodHandle operator = null;
+			Class<?> argumentType = null;
+			String[] functionNames = expression.split("\\s+and\\s+");
+			boolean pure = true;
+			boolean lastInsertedId = false;
+			String lookupFunction = null;
+			Object[] lookupArguments = null;
+			for (String functionName : functionNames) {
+				String memberName = Strings.toMemberName(functionName);
+				MethodHandle function = methods.get(memberName + '/' + (extraArguments.length + 1));
+				if (function == null) {
+					function = methods.get(memberName);
+				}
+				if (function == null) {
+					throw new EtlException("Function %s not found.", functionName);
+				}
+				pure &= pureMethods.contains(memberName);
+				lastInsertedId |= LAST_INSERTED_ID.equals(memberName);
+
+				MethodType type = function.type();
+				if (type.parameterCount() != extraArguments.length + 1) {
+					throw new EtlException("Function %s expects %d arguments but got %d.", functionName, type.parameterCount(), extraArguments.length + 1);
+				}
+				Object[] arguments = new Object[extraArguments.length];
+				for (int i = 0; i < extraArguments.length; ++i) {
+					arguments[i] = converter.asObject(extraArguments[i], type.parameterType(i + 1));
+				}
+				if (functionNames.length == 1 && (SQL_LOOKUP.equals(memberName) || LOOKUP.equals(memberName))) {
+					lookupFunction = memberName;
+					lookupArguments = arguments;
+				}
+				MethodHandle step = MethodHandles.insertArguments(function, 1, arguments);
+
+				if (chain == null) {
+					argumentType = type.parameterType(0);
+					chain = adapt(step, Object.class);
+					operator = step;
+				} else {
+					MethodHandle next = adapt(step, chain.type().returnType());
+					chain = MethodHandles.filterReturnValue(chain, next);
+					operator = MethodHandles.filterReturnValue(operator, next);
+				}
+			}
 
-		// last inserted ID
-		// person name
-		// translate to English and upper case
-		// timestamp by yyyy-MM-dd'T'HH:mm:ss
+			this.returnType = chain.type().returnType();
+			this.handle = nullSafe(chain.asType(MethodType.methodType(Object.class, Object.class)));
+			boolean numeric = returnType.isPrimitive() && returnType != void.class && returnType != boolean.class && returnType != char.class;
+			boolean integral = numeric && returnType != double.class && returnType != float.class;
+			this.doubleHandle = numeric ? chain.asType(MethodType.methodType(double.class, Object.class)) : null;
+			this.longHandle = integral ? chain.asType(MethodType.methodType(long.class, Object.class)) : null;
+			this.expressionArgument = argument != null ? convertValue(argument, argumentType) : null;
+			this.doubleOperator = numeric && argumentType == double.class && argument == null ? operator.asType(MethodType.methodType(double.class, double.class)) : null;
+			this.pure = pure && argument == null;
+			this.lastInsertedId = lastInsertedId;
+			this.lookupFunction = lookupFunction;
+			this.lookupArguments = lookupArguments;
+		}
 
-		Object value = argument;
-		for (String functionName : expression.split("\\s+and\\s+")) {
-			Method function = methods.get(Strings.toMemberName(functionName));
-			if (function == null) {
-				throw new EtlException("Function %s not found.", functionName);
+		public Object invoke(Object argument) {
+			try {
+				return (Object) handle.invokeExact(argument(argument));
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new EtlException(e);
 			}
+		}
 
-			Object[] arguments = new Object[extraArguments.length + 1];
-			arguments[0] = value;
-			for (int i = 0; i < extraArguments.length; ++i) {
-				arguments[i + 1] = extraArguments[i];
+		public double invokeDouble(Object argument) {
+			if (doubleHandle == null) {
+				throw new IllegalStateException("Function chain |" + expression + "| does not return a numeric primitive.");
 			}
+			try {
+				return (double) doubleHandle.invokeExact(argument(argument));
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new EtlException(e);
+			}
+		}
 
-			assert function.getParameterTypes().length == arguments.length;
-			for (int i = 0; i < arguments.length; ++i) {
-				if (arguments[i] instanceof String) {
-					arguments[i] = converter.asObject((String) arguments[i], function.getParameterTypes()[i]);
-				}
+		public long invokeLong(Object argument) {
+			if (longHandle == null) {
+				throw new IllegalStateException("Function chain |" + expression + "| does not return an integral primitive.");
 			}
-			// log.trace("Invoke {}({}).", functionName, Strings.join(arguments, ", "));
+			try {
+				return (long) longHandle.invokeExact(argument(argument));
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new EtlException(e);
+			}
+		}
 
+		/**
+		 * Test if this chain first function has double parameter and chain result is a numeric primitive, in which case chain
+		 * can be invoked with {@link #invokeDouble(double)}.
+		 * 
+		 * @return true if this chain is a numeric operator on double values.
+		 */
+		public boolean isDoubleOperator() {
+			return doubleOperator != null;
+		}
+
+		/**
+		 * Invoke numeric operator on a double value, without boxing.
+		 * 
+		 * @param argument double argument.
+		 * @return chain result.
+		 * @throws IllegalStateException if this chain is not a numeric operator, see {@link #isDoubleOperator()}.
+		 */
+		public double invokeDouble(double argument) {
+			if (doubleOperator == null) {
+				throw new IllegalStateException("Function chain |" + expression + "| is not a numeric operator.");
+			}
 			try {
-				value = function.invoke(this, arguments);
-			} catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+				return (double) doubleOperator.invokeExact(argument);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
 				throw new EtlException(e);
 			}
 		}
+
+		/**
+		 * Test if this chain has only pure functions, see {@link Pure}, in which case chain result depends only on chain
+		 * argument and can be cached.
+		 * 
+		 * @return true if this chain is pure.
+		 */
+		public boolean isPure() {
+			return pure;
+		}
+
+		/**
+		 * Test if this chain has last inserted ID function, e.g. <code>last inserted ID from commons.mission</code>, in which
+		 * case chain result depends on records already loaded and chain should not be invoked ahead of loader.
+		 * 
+		 * @return true if this chain uses last inserted ID.
+		 */
+		public boolean usesLastInsertedId() {
+			return lastInsertedId;
+		}
+
+		/**
+		 * Test if this chain is a single SQL lookup function, e.g. <code>sql lookup by ngs.operator, id, name</code>, in
+		 * which case values for many keys can be retrieved at once with {@link #lookup(Collection)}.
+		 * 
+		 * @return true if this chain is a SQL lookup.
+		 */
+		public boolean isLookup() {
+			return SQL_LOOKUP.equals(lookupFunction);
+		}
+
+		/**
+		 * Look up values for a batch of keys with a single query per data source lookup batch.
+		 * 
+		 * @param keys distinct, not null keys.
+		 * @return found values mapped by keys; keys not found are missing.
+		 * @throws IllegalStateException if this chain is not a SQL lookup, see {@link #isLookup()}.
+		 */
+		public Map<Object, Object> lookup(Collection<?> keys) {
+			if (!isLookup()) {
+				throw new IllegalStateException("Function chain |" + expression + "| is not a SQL lookup.");
+			}
+			return lookupValues(keys, (TableName) lookupArguments[0], (String) lookupArguments[1], (String) lookupArguments[2]);
+		}
+
+		/**
+		 * Test if this chain is a single in memory lookup function, e.g. <code>lookup by commons.dimension, id, name</code>.
+		 * Caller should load lookup index once, see {@link #createLookupIndex(long)}, and use it for all processed records.
+		 * 
+		 * @return true if this chain is an in memory lookup.
+		 */
+		public boolean isIndexLookup() {
+			return LOOKUP.equals(lookupFunction);
+		}
+
+		/**
+		 * Get lookup index identity, that is, lookup function arguments, so that transfer rules with the same lookup can
+		 * share the index.
+		 * 
+		 * @return lookup index identity.
+		 * @throws IllegalStateException if this chain is not an in memory lookup, see {@link #isIndexLookup()}.
+		 */
+		public String getLookupIndexName() {
+			if (!isIndexLookup()) {
+				throw new IllegalStateException("Function chain |" + expression + "| is not an in memory lookup.");
+			}
+			return Strings.concat(lookupArguments[0], ':', lookupArguments[1], ':', lookupArguments[2]);
+		}
+
+		/**
+		 * Load dimension table from lookup function arguments into an in memory index.
+		 * 
+		 * @param memoryBudget maximum estimated index size, in bytes.
+		 * @return lookup index.
+		 * @throws IllegalStateException if this chain is not an in memory lookup, see {@link #isIndexLookup()}.
+		 * @throws EtlException if index estimated size exceeds memory budget.
+		 */
+		LookupIndex createLookupIndex(long memoryBudget) {
+			if (!isIndexLookup()) {
+				throw new IllegalStateException("Function chain |" + expression + "| is not an in memory lookup.");
+			}
+			TableName tableName = (TableName) lookupArguments[0];
+			IDataSource dataSource = project.getDataSource(tableName.getDataSourceName());
+			return new LookupIndex(dataSource, tableName.getSimpleName(), (String) lookupArguments[1], (String) lookupArguments[2], memoryBudget);
+		}
+
+		/**
+		 * Get chain result type, primitive if last function in chain returns a primitive.
+		 * 
+		 * @return chain result type.
+		 */
+		public Class<?> getReturnType() {
+			return returnType;
+		}
+
+		private Object argument(Object argument) {
+			if (expressionArgument != null) {
+				if (argument != null) {
+					throw new IllegalStateException("Argument provided by caller and by expression.");
+				}
+				return expressionArgument;
+			}
+			return argument;
+		}
+
+		@Override
+		public String toString() {
+			return expression;
+		}
+	}
+
+	/**
+	 * Adapt function handle with single parameter to given value type. If value could be a string and function parameter
+	 * is not, value is converted at runtime using converter; otherwise method handle conversions are used, e.g. primitive
+	 * widening, boxing or cast.
+	 * 
+	 * @param function function handle with single parameter,
+	 * @param valueType type of the value function is invoked with.
+	 * @return function handle with parameter of requested value type.
+	 */
+	private MethodHandle adapt(MethodHandle function, Class<?> valueType) {
+		Class<?> parameterType = function.type().parameterType(0);
+		if ((valueType == Object.class || valueType == String.class) && parameterType != String.class && parameterType != Object.class) {
+			MethodHandle convert = MethodHandles.insertArguments(CONVERT_VALUE.bindTo(this), 1, parameterType);
+			convert = convert.asType(MethodType.methodType(parameterType, valueType));
+			return MethodHandles.filterArguments(function, 0, convert);
+		}
+		try {
+			return function.asType(function.type().changeParameterType(0, valueType));
+		} catch (WrongMethodTypeException e) {
+			// not convertible types, e.g. double to string; adapt to object and let runtime report bad types
+			MethodHandle box = MethodHandles.identity(valueType).asType(MethodType.methodType(Object.class, valueType));
+			return MethodHandles.filterArguments(adapt(function, Object.class), 0, box);
+		}
+	}
+
+	/**
+	 * Convert value to function parameter type. Strings are converted with converter and numbers to primitive parameter type;
+	 * other values are returned as they are.
+	 */
+	Object convertValue(Object value, Class<?> type) {
+		if (value instanceof String) {
+			return type != String.class && type != Object.class ? converter.asObject((String) value, type) : value;
+		}
+		if (value instanceof Number && type.isPrimitive()) {
+			Number number = (Number) value;
+			if (type == double.class) {
+				return number.doubleValue();
+			}
+			if (type == long.class) {
+				return number.longValue();
+			}
+			if (type == int.class) {
+				return number.intValue();
+			}
+			if (type == float.class) {
+				return number.floatValue();
+			}
+			if (type == short.class) {
+				return number.shortValue();
+			}
+			if (type == byte.class) {
+				return number.byteValue();
+			}
+		}
 		return value;
 	}
 
-	private Method method(String expression, WordsIterator words) {
+	/**
+	 * Guard function handle with single parameter so that a null argument is returned without invoking the function.
+	 * Handles with primitive parameter or result are returned as they are since primitive values cannot be null.
+	 */
+	private static MethodHandle nullSafe(MethodHandle function) {
+		MethodType type = function.type();
+		if (type.parameterType(0).isPrimitive() || type.returnType().isPrimitive()) {
+			return function;
+		}
+		MethodHandle isNull = IS_NULL.asType(MethodType.methodType(boolean.class, type.parameterType(0)));
+		MethodHandle nullValue = MethodHandles.dropArguments(MethodHandles.constant(type.returnType(), null), 0, type.parameterType(0));
+		return MethodHandles.guardWithTest(isNull, nullValue, function);
+	}
+
+	private static final MethodHandle CONVERT_VALUE;
+	private static final MethodHandle IS_NULL;
+	static {
+		try {
+			CONVERT_VALUE = MethodHandles.lookup().findVirtual(Functions.class, "convertValue", MethodType.methodType(Object.class, Object.class, Class.class));
+			IS_NULL = MethodHandles.lookup().findStatic(Objects.class, "isNull", MethodType.methodType(boolean.class, Object.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private MethodHandle method(String expression, WordsIterator words) {
 		if (!words.hasNext()) {
 			throw new EtlException("Function not found for expression |%s|.", expression);
 		}
@@ -149,7 +517,7 @@ public class Functions {
 			String word = words.next();
 			methodName.append(Character.toUpperCase(word.charAt(0)));
 			methodName.append(word.substring(1).toLowerCase());
-			Method method = this.methods.get(methodName.toString());
+			MethodHandle method = this.methods.get(methodName.toString());
 			if (method != null) {
 				return method;
 			}
@@ -167,14 +535,28 @@ public class Functions {
 	}
 
 	private static final long MIN_TIMESTAMP = Timestamp.from(Instant.parse("2000-01-01T00:00:00.00Z")).getTime();
+	/** Time zone for parsed timestamps, resolved once; unknown zone identifier is resolved to GMT by time zone lookup. */
+	private static final ZoneId TIMESTAMP_ZONE = TimeZone.getTimeZone("EEST").toZoneId();
+	/** Language tag used when timestamp function has no locale argument. */
+	private static final String DEFAULT_LOCALE = "";
+
+	/** Timestamp parsers mapped by pattern and language tag; parsers are immutable and shared by all threads. */
+	private final Map<String, Map<String, TimestampParser>> timestampParsers = new ConcurrentHashMap<>();
+
+	// timestamp by yyyy-MM-dd'T'HH:mm:ss
+	@Pure
+	private Timestamp timestamp(String timestampValue, String dateFormat) {
+		return timestamp(timestampValue, dateFormat, DEFAULT_LOCALE);
+	}
 
-	private Timestamp timestamp(String timestampValue, String dateFormat) throws ParseException {
+	// timestamp by dd MMMM yyyy HH:mm, ro-RO
+	@Pure
+	private Timestamp timestamp(String timestampValue, String dateFormat, String languageTag) {
 		if (timestampValue == null) {
 			return null;
 		}
-		DateFormat format = new SimpleDateFormat(dateFormat);
-		format.setTimeZone(TimeZone.getTimeZone("EEST"));
-		Timestamp timestamp = new Timestamp(format.parse(timestampValue).getTime());
+		Instant instant = timestampParser(dateFormat, languageTag).parse(timestampValue);
+		Timestamp timestamp = Timestamp.from(instant);
 		if (timestamp.getTime() < MIN_TIMESTAMP || timestamp.getTime() > System.currentTimeMillis()) {
 			log.error("Invalid timestamp value {}.", timestamp);
 			throw new EtlException("Invalid timestamp value.");
@@ -182,14 +564,155 @@ public class Functions {
 		return timestamp;
 	}
 
+	private TimestampParser timestampParser(String pattern, String languageTag) {
+		// avoid capturing lambda allocation on cache hit
+		Map<String, TimestampParser> parsers = timestampParsers.get(pattern);
+		if (parsers == null) {
+			parsers = timestampParsers.computeIfAbsent(pattern, key -> new ConcurrentHashMap<>());
+		}
+		TimestampParser parser = parsers.get(languageTag);
+		if (parser == null) {
+			parser = parsers.computeIfAbsent(languageTag, key -> new TimestampParser(pattern, key));
+		}
+		return parser;
+	}
+
+	/**
+	 * Immutable timestamp parser for a pattern and locale. Common ISO patterns with fixed positions are parsed directly
+	 * from characters; on any mismatch, and for all other patterns, parser delegates to a cached date time formatter.
+	 * Missing time fields default to zero, so that date only patterns are accepted.
+	 * <p>
+	 * Formatter keeps legacy {@link java.text.SimpleDateFormat} semantics: numeric fields accept variable digits count,
+	 * text fields are case insensitive, out of range values roll over, e.g. 2021-02-30 is 2021-03-02, and trailing text
+	 * after pattern is ignored.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private static final class TimestampParser {
+		private final DateTimeFormatter formatter;
+		/** Length of the ISO value parsed directly or zero if pattern has no fast path. */
+		private final int isoLength;
+		/** Separator between date and time for ISO patterns, either 'T' or space. */
+		private final char isoSeparator;
+
+		TimestampParser(String pattern, String languageTag) {
+			DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().parseLenient().parseCaseInsensitive().appendPattern(pattern);
+			// hour of day default would conflict with am/pm clock hour, so it is added only if pattern has no hour letter
+			if (!pattern.matches(".*[HhKk].*")) {
+				builder.parseDefaulting(ChronoField.HOUR_OF_DAY, 0);
+			}
+			builder.parseDefaulting(ChronoField.MINUTE_OF_HOUR, 0).parseDefaulting(ChronoField.SECOND_OF_MINUTE, 0);
+			Locale locale = languageTag.isEmpty() ? Locale.getDefault(Locale.Category.FORMAT) : Locale.forLanguageTag(languageTag);
+			this.formatter = builder.toFormatter(locale).withResolverStyle(ResolverStyle.LENIENT).withZone(TIMESTAMP_ZONE);
+
+			switch (pattern) {
+			case "yyyy-MM-dd'T'HH:mm:ss":
+				isoLength = 19;
+				isoSeparator = 'T';
+				break;
+
+			case "yyyy-MM-dd HH:mm:ss":
+				isoLength = 19;
+				isoSeparator = ' ';
+				break;
+
+			case "yyyy-MM-dd'T'HH:mm:ss.SSS":
+				isoLength = 23;
+				isoSeparator = 'T';
+				break;
+
+			case "yyyy-MM-dd HH:mm:ss.SSS":
+				isoLength = 23;
+				isoSeparator = ' ';
+				break;
+
+			case "yyyy-MM-dd":
+				isoLength = 10;
+				isoSeparator = 0;
+				break;
+
+			default:
+				isoLength = 0;
+				isoSeparator = 0;
+			}
+		}
+
+		Instant parse(String value) {
+			if (isoLength != 0 && value.length() == isoLength) {
+				LocalDateTime dateTime = parseIso(value);
+				if (dateTime != null) {
+					return dateTime.atZone(TIMESTAMP_ZONE).toInstant();
+				}
+			}
+			// parse position allows trailing text; formatter still throws if value does not match pattern
+			return Instant.from(formatter.parse(value, new ParsePosition(0)));
+		}
+
+		/**
+		 * Parse ISO value with fixed positions, returning null if value does not match pattern so that caller falls back to
+		 * formatter, which reports parsing errors.
+		 */
+		private LocalDateTime parseIso(String value) {
+			if (value.charAt(4) != '-' || value.charAt(7) != '-') {
+				return null;
+			}
+			int year = digits(value, 0, 4);
+			int month = digits(value, 5, 2);
+			int day = digits(value, 8, 2);
+			if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+				return null;
+			}
+			if (isoLength == 10) {
+				return day <= YearMonth.of(year, month).lengthOfMonth() ? LocalDateTime.of(year, month, day, 0, 0) : null;
+			}
+
+			if (value.charAt(10) != isoSeparator || value.charAt(13) != ':' || value.charAt(16) != ':') {
+				return null;
+			}
+			int hour = digits(value, 11, 2);
+			int minute = digits(value, 14, 2);
+			int second = digits(value, 17, 2);
+			if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+				return null;
+			}
+			int millis = 0;
+			if (isoLength == 23) {
+				if (value.charAt(19) != '.' || (millis = digits(value, 20, 3)) < 0) {
+					return null;
+				}
+			}
+			if (day > YearMonth.of(year, month).lengthOfMonth()) {
+				return null;
+			}
+			return LocalDateTime.of(year, month, day, hour, minute, second, millis * 1_000_000);
+		}
+
+		/** Parse decimal digits from value, returning -1 if a character is not a digit. */
+		private static int digits(String value, int offset, int length) {
+			int result = 0;
+			for (int i = offset; i < offset + length; ++i) {
+				char c = value.charAt(i);
+				if (c < '0' || c > '9') {
+					return -1;
+				}
+				result = result * 10 + (c - '0');
+			}
+			return result;
+		}
+	}
+
+	@Pure
 	private int integer(String integerValue) {
 		return Integer.parseInt(integerValue);
 	}
 
+	@Pure
 	private double number(String doubleValue) {
 		return Double.parseDouble(doubleValue);
 	}
 
+	private static final String LAST_INSERTED_ID = "lastInsertedId";
+
 	private Object lastInsertedId(TableName tableName) {
 		log.trace("lastInsertedId(TableName)");
 		IDataSource dataSource = project.getDataSource(tableName.getDataSourceName());
@@ -201,15 +724,18 @@ public class Functions {
 		ENGLISH_DICTIONARY.put("subterana", "underground");
 	}
 
+	@Pure
 	private String translateToEnglish(String text) {
 		String translation = ENGLISH_DICTIONARY.get(text.toLowerCase());
 		return translation != null ? translation : text;
 	}
 
+	@Pure
 	private String upperCase(String text) {
 		return text.toUpperCase();
 	}
 
+	@Pure
 	private String personName(String name) {
 		return Strings.toTitleCase(name);
 	}
@@ -218,30 +744,207 @@ public class Functions {
 		return 1000.0 * kph / 3600.0;
 	}
 
+	private static final String SQL_LOOKUP = "sqlLookup";
+	private static final String LOOKUP = "lookup";
+
+	// sql lookup by ngs.operator, id, name
+	private Object sqlLookup(Object key, TableName tableName, String keyColumn, String valueColumn) {
+		if (key == null) {
+			return null;
+		}
+		return lookupValues(Collections.singletonList(key), tableName, keyColumn, valueColumn).get(key);
+	}
+
+	// lookup by commons.dimension, id, name
+	// transformers use in memory index loaded once per task; invoked directly, outside task, value is queried from database
+	private Object lookup(Object key, TableName tableName, String keyColumn, String valueColumn) {
+		return sqlLookup(key, tableName, keyColumn, valueColumn);
+	}
+
+	private Map<Object, Object> lookupValues(Collection<?> keys, TableName tableName, String keyColumn, String valueColumn) {
+		IDataSource dataSource = project.getDataSource(tableName.getDataSourceName());
+		try {
+			return dataSource.lookup(tableName.getSimpleName(), keyColumn, valueColumn, keys);
+		} catch (SQLException e) {
+			throw new FunctionException(e);
+		}
+	}
+
+	/** SQL expression with data source name captured from, last, FROM clause qualified table name. */
+	private static final Pattern SQL_EXPRESSION = Pattern.compile("^(?:SELECT|DELETE)\\s+.*FROM\\s+(\\w+).+$");
+	/** Table qualified by data source name; table name could be a variable reference, injected on execution. */
+	private static final Pattern QUALIFIED_TABLE = Pattern.compile("(FROM|JOIN)\\s+\\w+\\.([\\w$]+)");
+	/**
+	 * Variable reference in value position, bound as statement parameter: quoted literal, group 1, or comparison right
+	 * operand, group 2. Any other quoted literal is matched, without groups, in order to skip variable references from
+	 * quoted text.
+	 */
+	private static final Pattern SQL_VARIABLE = Pattern.compile("'(\\$\\w+)'|'(?:[^']|'')*'|(?<=(?:=|<>|!=|<|>)\\s{0,16})(\\$\\w+)\\b");
+	private static final Pattern VARIABLE = Pattern.compile("\\$\\w+");
+
+	/** Parsed SQL expressions, mapped by expression source, with variables not injected. */
+	private final Map<String, SqlStatement> sqlStatements = new ConcurrentHashMap<>();
+
+	/**
+	 * Execute SQL expression with tables qualified by data source name. Expression is parsed once into a parameterized
+	 * statement: variable references in value position are replaced by statement parameters and bound to current variable
+	 * values on every execution; other variable references, e.g. table names, are still injected as text.
+	 * 
+	 * @param query SQL expression, possible with variable references.
+	 * @return selected value or updated rows count.
+	 */
 	public Object executeSql(String query) {
 		log.debug(query);
 
 		// SELECT Operator1 FROM ngs.information
 		// SELECT TOP 1 e.name FROM defect
-		// DELETE FROM commons.mission WHERE application_mission='...'
+		// DELETE FROM commons.mission WHERE application_mission='$mission'
+
+		SqlStatement statement = sqlStatements.get(query);
+		if (statement == null) {
+			statement = sqlStatements.computeIfAbsent(query, SqlStatement::new);
+		}
+		return statement.execute();
+	}
 
-		Pattern pattern = Pattern.compile("^(?:SELECT|DELETE)\\s+.*FROM\\s+(\\w+).+$");
-		Matcher matcher = pattern.matcher(query);
-		if (!matcher.find()) {
-			throw new EtlException("Invalid SQL expression: %s", query);
+	/**
+	 * Table qualified by data source name, on script statements; group 2 is data source and group 3 table name. ON keyword
+	 * is considered only after index name, since on join condition it is followed by qualified column name.
+	 */
+	private static final Pattern SCRIPT_TABLE = Pattern.compile("\\b(FROM|JOIN|INTO|UPDATE|TABLE|INDEX\\s+(?:CONCURRENTLY\\s+)?(?:IF\\s+NOT\\s+EXISTS\\s+)?\\w+\\s+ON|INDEX|ANALYZE|VACUUM|TRUNCATE)\\s+(\\w+)\\.([\\w$]+)", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Execute SQL script statements. A single statement script that is a SQL expression is executed as it is, see
+	 * {@link #executeSql(String)}. Otherwise statements are executed as a batch, in a single transaction, on the data
+	 * source of the first qualified table name; qualified table names of that data source are unqualified and escaped and
+	 * variables are injected as text. See {@link IDataSource#executeBatch(List)} for queries and statements that cannot run
+	 * inside a transaction.
+	 * 
+	 * @param statements script statements.
+	 * @throws EtlException if script has no qualified table name.
+	 * @throws FunctionException if script execution fails.
+	 */
+	public void executeScript(List<String> statements) {
+		if (statements.isEmpty()) {
+			return;
+		}
+		if (statements.size() == 1 && SQL_EXPRESSION.matcher(statements.get(0)).find()) {
+			executeSql(statements.get(0));
+			return;
 		}
 
-		String dataSourceName = matcher.group(1);
+		String dataSourceName = scriptDataSourceName(statements);
+		if (dataSourceName == null) {
+			throw new EtlException("Missing data source for SQL script: %s", statements.get(0));
+		}
 		IDataSource dataSource = project.getDataSource(dataSourceName);
-		query = query.replaceAll("FROM\\s+\\w+\\.(\\w+)", Strings.concat("FROM ", dataSource.getEscapeChar(), "$1", dataSource.getEscapeChar()));
-		query = query.replaceAll("JOIN\\s+\\w+\\.(\\w+)", Strings.concat("JOIN ", dataSource.getEscapeChar(), "$1", dataSource.getEscapeChar()));
+		String escape = Character.toString(dataSource.getEscapeChar());
+
+		List<String> sqlStatements = new ArrayList<>(statements.size());
+		for (String statement : statements) {
+			StringBuffer buffer = new StringBuffer();
+			Matcher matcher = SCRIPT_TABLE.matcher(statement);
+			while (matcher.find()) {
+				String replacement = matcher.group(2).equalsIgnoreCase(dataSourceName) ? Strings.concat(matcher.group(1), ' ', escape, matcher.group(3), escape) : matcher.group();
+				matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement));
+			}
+			matcher.appendTail(buffer);
+			sqlStatements.add(project.injectVariables(buffer.toString()));
+		}
+
 		try {
-			return dataSource.execute(query);
+			dataSource.executeBatch(sqlStatements);
 		} catch (SQLException e) {
 			throw new FunctionException(e);
 		}
 	}
 
+	/**
+	 * Get the data source name of the first qualified table name from script statements.
+	 * 
+	 * @param statements script statements.
+	 * @return script data source name or null if script has no qualified table name.
+	 */
+	static String scriptDataSourceName(List<String> statements) {
+		for (String statement : statements) {
+			Matcher matcher = SCRIPT_TABLE.matcher(statement);
+			if (matcher.find()) {
+				return matcher.group(2);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * SQL expression normalized for its data source, with table names unqualified and escaped and variables in value
+	 * position replaced by parameter placeholders.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private final class SqlStatement {
+		private final IDataSource dataSource;
+		private final String sql;
+		/** Names of the variables bound to statement parameters, in parameters order, with dollar prefix. */
+		private final String[] parameters;
+		/** Parameters from quoted literals, bound as strings, in parameters order. */
+		private final boolean[] stringParameters;
+		/** True if SQL still has variable references that should be injected as text. */
+		private final boolean textVariables;
+
+		SqlStatement(String query) {
+			Matcher matcher = SQL_EXPRESSION.matcher(query);
+			if (!matcher.find()) {
+				throw new EtlException("Invalid SQL expression: %s", query);
+			}
+			this.dataSource = project.getDataSource(matcher.group(1));
+
+			String escape = Character.toString(dataSource.getEscapeChar());
+			String sql = QUALIFIED_TABLE.matcher(query).replaceAll(Strings.concat("$1 ", escape, "$2", escape));
+
+			List<String> parameters = new ArrayList<>();
+			List<Boolean> stringParameters = new ArrayList<>();
+			StringBuffer buffer = new StringBuffer();
+			matcher = SQL_VARIABLE.matcher(sql);
+			while (matcher.find()) {
+				if (matcher.group(1) != null) {
+					parameters.add(matcher.group(1));
+					stringParameters.add(true);
+					matcher.appendReplacement(buffer, "?");
+				} else if (matcher.group(2) != null) {
+					parameters.add(matcher.group(2));
+					stringParameters.add(false);
+					matcher.appendReplacement(buffer, "?");
+				} else {
+					// quoted text is kept as it is; variables from it, if any, are injected as text
+					matcher.appendReplacement(buffer, Matcher.quoteReplacement(matcher.group()));
+				}
+			}
+			matcher.appendTail(buffer);
+
+			this.sql = buffer.toString();
+			this.parameters = parameters.toArray(new String[0]);
+			this.stringParameters = new boolean[stringParameters.size()];
+			for (int i = 0; i < this.stringParameters.length; ++i) {
+				this.stringParameters[i] = stringParameters.get(i);
+			}
+			this.textVariables = VARIABLE.matcher(this.sql).find();
+		}
+
+		Object execute() {
+			Object[] values = new Object[parameters.length];
+			for (int i = 0; i < parameters.length; ++i) {
+				Object value = project.getVariableValue(parameters[i]);
+				// quoted literal was a string on text injection so bind it as string, whatever variable value type
+				values[i] = stringParameters[i] && value != null ? converter.asString(value) : value;
+			}
+			try {
+				return dataSource.execute(textVariables ? project.injectVariables(sql) : sql, values);
+			} catch (SQLException e) {
+				throw new FunctionException(e);
+			}
+		}
+	}
+
 	private static final List<String> STOP_WORDS = new ArrayList<>();
 	static {
 		STOP_WORDS.add("from");
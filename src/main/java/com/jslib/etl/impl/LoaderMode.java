@@ -0,0 +1,30 @@
+package com.jslib.etl.impl;
+
+import com.jslib.etl.EtlException;
+
+/**
+ * Strategy used by SQL loader to write destination table. Is selected per task, using <code>loaderMode</code> task
+ * property; if not configured, <code>speedOptimization</code> task property selects {@link #BATCH} or {@link #SINGLE}.
+ * 
+ * @author Iulian Rotaru
+ */
+public enum LoaderMode {
+	/** Insert or update records one by one, on caller thread; keeps track of last inserted ID. */
+	SINGLE,
+	/** Insert or update records in JDBC batches, on a background loader thread. */
+	BATCH,
+	/** Insert records in batches using multi-row INSERT statements, capped by driver bind parameters limit. */
+	MULTI_ROW,
+	/** PostgreSQL only, stream records in batches using COPY FROM STDIN text format. */
+	COPY,
+	/** PostgreSQL only, stream records in batches using COPY FROM STDIN binary format. */
+	COPY_BINARY;
+
+	public static LoaderMode forName(String mode) {
+		try {
+			return valueOf(mode.trim().toUpperCase().replaceAll("[\\s-]+", "_"));
+		} catch (Exception e) {
+			throw new EtlException("Unknown or misspelled loader mode |%s|.", mode);
+		}
+	}
+}
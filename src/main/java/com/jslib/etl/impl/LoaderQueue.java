@@ -0,0 +1,221 @@
+package com.jslib.etl.impl;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.jslib.etl.DataRecord;
+import com.jslib.etl.IQueueElement;
+import com.jslib.etl.RecordBatch;
+
+/**
+ * Bounded queue between task thread and loader writer thread(s). Queue is bounded by records count and, optional, by an
+ * estimated memory budget, in bytes; when full, producer is blocked till writer drains enough elements. A record batch
+ * counts for all its records. Keeps statistics about peak fill level and the time producers spent blocked.
+ * <p>
+ * Record size is a rough estimation of heap usage based on value types; it is computed only if memory budget is enabled.
+ * An element larger than the whole memory budget is still accepted when queue is empty, in order to avoid dead lock.
+ * 
+ * @author Iulian Rotaru
+ */
+class LoaderQueue {
+	private final int capacity;
+	private final long memoryBudget;
+
+	private final ReentrantLock lock;
+	private final Condition notEmpty;
+	private final Condition notFull;
+	private final Deque<Entry> entries;
+
+	private int usedCapacity;
+	private long usedMemory;
+
+	private int peakSize;
+	private long peakMemory;
+	private long blockedNanos;
+	private int blockedCount;
+
+	public LoaderQueue(int capacity, long memoryBudget) {
+		this.capacity = capacity > 0 ? capacity : Integer.MAX_VALUE;
+		this.memoryBudget = memoryBudget > 0 ? memoryBudget : Long.MAX_VALUE;
+
+		this.lock = new ReentrantLock();
+		this.notEmpty = lock.newCondition();
+		this.notFull = lock.newCondition();
+		this.entries = new ArrayDeque<>();
+	}
+
+	/**
+	 * Put element into queue, waiting up to given timeout for queue space. A producer retrying the same element after a
+	 * timeout should set <code>retry</code> flag so that a blocked offer is counted once, no matter how many timeouts it
+	 * takes; waiting time is accumulated on every attempt.
+	 * 
+	 * @param element queue element,
+	 * @param timeoutMillis wait timeout, in milliseconds,
+	 * @param retry true if element is offered again after a previous timeout.
+	 * @return true if element was added to queue or false on timeout.
+	 * @throws InterruptedException if waiting thread is interrupted.
+	 */
+	public boolean offer(IQueueElement element, long timeoutMillis, boolean retry) throws InterruptedException {
+		long size = memoryBudget != Long.MAX_VALUE ? estimateSize(element) : 0;
+		long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+		lock.lockInterruptibly();
+		try {
+			if (isFull(size)) {
+				long startNanos = System.nanoTime();
+				if (!retry) {
+					++blockedCount;
+				}
+				try {
+					while (isFull(size)) {
+						if (nanos <= 0) {
+							return false;
+						}
+						nanos = notFull.awaitNanos(nanos);
+					}
+				} finally {
+					blockedNanos += System.nanoTime() - startNanos;
+				}
+			}
+			enqueue(new Entry(element, records(element), size));
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Unconditionally add element to queue, ignoring queue bounds. Used for control elements, e.g. writer shutdown.
+	 * 
+	 * @param element queue element.
+	 */
+	public void add(IQueueElement element) {
+		lock.lock();
+		try {
+			enqueue(new Entry(element, 0, 0));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public IQueueElement take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (entries.isEmpty()) {
+				notEmpty.await();
+			}
+			Entry entry = entries.removeFirst();
+			usedCapacity -= entry.records;
+			usedMemory -= entry.size;
+			notFull.signalAll();
+			return entry.element;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getPeakSize() {
+		return peakSize;
+	}
+
+	public long getPeakMemory() {
+		return peakMemory;
+	}
+
+	public long getBlockedMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(blockedNanos);
+	}
+
+	public int getBlockedCount() {
+		return blockedCount;
+	}
+
+	private boolean isFull(long size) {
+		if (entries.isEmpty()) {
+			return false;
+		}
+		return usedCapacity >= capacity || usedMemory + size > memoryBudget;
+	}
+
+	private void enqueue(Entry entry) {
+		entries.addLast(entry);
+		usedCapacity += entry.records;
+		usedMemory += entry.size;
+		if (usedCapacity > peakSize) {
+			peakSize = usedCapacity;
+		}
+		if (usedMemory > peakMemory) {
+			peakMemory = usedMemory;
+		}
+		notEmpty.signal();
+	}
+
+	private static int records(IQueueElement element) {
+		if (element instanceof RecordBatch) {
+			return ((RecordBatch) element).size();
+		}
+		return element instanceof DataRecord ? 1 : 0;
+	}
+
+	private static long estimateSize(IQueueElement element) {
+		if (element instanceof RecordBatch) {
+			RecordBatch batch = (RecordBatch) element;
+			// primitive vectors are 8 bytes per row, at most, and object vectors have references and values
+			long size = 64;
+			for (int column = 0; column < batch.getSchema().size(); ++column) {
+				size += 8L * batch.capacity();
+				if (batch.type(column) == RecordBatch.VectorType.OBJECT) {
+					for (int row = 0; row < batch.size(); ++row) {
+						size += estimateSize(batch.objects(column)[row]);
+					}
+				}
+			}
+			return size;
+		}
+		if (!(element instanceof DataRecord)) {
+			return 0;
+		}
+		DataRecord record = (DataRecord) element;
+		// record object and values array; schema is shared by records and not counted
+		long size = 32 + 8L * record.size();
+		for (int i = 0; i < record.size(); ++i) {
+			size += estimateSize(record.get(i));
+		}
+		return size;
+	}
+
+	static long estimateSize(Object value) {
+		if (value == null) {
+			return 0;
+		}
+		if (value instanceof String) {
+			return 40 + ((String) value).length();
+		}
+		if (value instanceof byte[]) {
+			return 16 + ((byte[]) value).length;
+		}
+		if (value instanceof BigDecimal) {
+			return 64;
+		}
+		if (value instanceof Number || value instanceof Boolean) {
+			return 16;
+		}
+		return 32;
+	}
+
+	private static class Entry {
+		final IQueueElement element;
+		final int records;
+		final long size;
+
+		Entry(IQueueElement element, int records, long size) {
+			this.element = element;
+			this.records = records;
+			this.size = size;
+		}
+	}
+}
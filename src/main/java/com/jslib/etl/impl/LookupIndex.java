@@ -0,0 +1,264 @@
+package com.jslib.etl.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.etl.DataRecord;
+import com.jslib.etl.EtlException;
+import com.jslib.etl.IDataSource;
+import com.jslib.etl.IExtractor;
+import com.jslib.etl.meta.MetaProperties;
+
+/**
+ * In memory index of a dimension table, mapping key column values to value column values. Index is loaded once, with a
+ * single streaming query, and is read only after loading so that it can be used concurrently, e.g. by pipeline
+ * transform workers. Index loading fails if dimension table cannot be read, so that an index is never partially loaded. Keys of numeric dimension columns are stored into a primitive long keyed hash map, without boxing,
+ * if integral; other keys are stored into a hash map by their string representation.
+ * <p>
+ * Index memory usage is estimated while loading and loading is aborted if estimated size exceeds memory budget. Index
+ * keeps hit and miss counters, reported by {@link #report(String)}.
+ *
+ * @author Iulian Rotaru
+ */
+class LookupIndex {
+	private static final Log log = LogFactory.getLog(LookupIndex.class);
+
+	private static final String EXTRACTOR_MODE_PROPERTY = "extractorMode";
+
+	private final String name;
+	/** Dimension key column is numeric, detected from loaded key values type. */
+	private final boolean numeric;
+	private final LongObjectMap numericKeys;
+	private final Map<Object, Object> objectKeys;
+	private final long memorySize;
+
+	private final LongAdder hits;
+	private final LongAdder misses;
+
+	/**
+	 * Load dimension table into memory index.
+	 *
+	 * @param dataSource data source owning dimension table,
+	 * @param tableName dimension table name,
+	 * @param keyColumn key column name,
+	 * @param valueColumn value column name,
+	 * @param memoryBudget maximum estimated index size, in bytes.
+	 * @throws EtlException if dimension table reading fails or index estimated size exceeds memory budget.
+	 */
+	public LookupIndex(IDataSource dataSource, String tableName, String keyColumn, String valueColumn, long memoryBudget) {
+		this.name = dataSource.getName() + '.' + tableName;
+		this.numericKeys = new LongObjectMap();
+		this.objectKeys = new HashMap<>();
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+
+		long startTimeMillis = System.currentTimeMillis();
+		// value sizes and hash map entries; primitive map arrays are added on every check since they grow by rehash
+		long valuesSize = 0;
+		Boolean numeric = null;
+		// paged extractors are not consistent for a table without order and may hide query errors; read with a single query
+		MetaProperties properties = new MetaProperties();
+		properties.put(EXTRACTOR_MODE_PROPERTY, ExtractorMode.STREAM.name());
+		try (IExtractor extractor = dataSource.extractor(tableName, Arrays.asList(keyColumn, valueColumn), properties)) {
+			for (DataRecord record : extractor) {
+				Object key = record.get(0);
+				if (key == null) {
+					continue;
+				}
+				if (numeric == null) {
+					numeric = isNumeric(key);
+				}
+				key = normalizeKey(key, numeric);
+				Object value = record.get(1);
+				valuesSize += LoaderQueue.estimateSize(value);
+				if (key instanceof Long) {
+					numericKeys.put((Long) key, value);
+				} else {
+					objectKeys.put(key, value);
+					valuesSize += 48 + LoaderQueue.estimateSize(key);
+				}
+				if (valuesSize + numericKeys.memorySize() > memoryBudget) {
+					throw new EtlException("Lookup index |%s| exceeds memory budget of %d bytes.", name, memoryBudget);
+				}
+			}
+		} catch (EtlException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new EtlException(String.format("Fail to load lookup index |%s|.", name), e);
+		}
+		this.numeric = Boolean.TRUE.equals(numeric);
+		this.memorySize = valuesSize + numericKeys.memorySize();
+		log.info("Load lookup index |{}| with {} keys, about {} bytes, in {processing_time} seconds.", name, size(), memorySize, (System.currentTimeMillis() - startTimeMillis) / 1000.0);
+	}
+
+	/**
+	 * Get value for a key, updating hit and miss counters.
+	 *
+	 * @param key lookup key, possible null.
+	 * @return value mapped to key or null if key is null or not found.
+	 */
+	public Object get(Object key) {
+		Object normalizedKey = normalizeKey(key, numeric);
+		if (normalizedKey == null) {
+			return null;
+		}
+		if (normalizedKey instanceof Long) {
+			long numericKey = (Long) normalizedKey;
+			if (numericKeys.containsKey(numericKey)) {
+				hits.increment();
+				return numericKeys.get(numericKey);
+			}
+		} else if (objectKeys.containsKey(normalizedKey)) {
+			hits.increment();
+			return objectKeys.get(normalizedKey);
+		}
+		misses.increment();
+		return null;
+	}
+
+	public int size() {
+		return numericKeys.size() + objectKeys.size();
+	}
+
+	public void report(String taskName) {
+		log.info("Task '{task_name}' lookup index |{}|: {} keys, about {} bytes, {} hits, {} misses.", taskName, name, size(), memorySize, hits.sum(), misses.sum());
+	}
+
+	/**
+	 * Test if a dimension key value comes from a numeric key column.
+	 *
+	 * @param key dimension key value, not null.
+	 * @return true if key value is a number.
+	 */
+	static boolean isNumeric(Object key) {
+		return key instanceof Number;
+	}
+
+	/**
+	 * Normalize lookup key so that keys with the same value but different types are equal, e.g. integer key from
+	 * database and long or string value from source record. If dimension key column is numeric, integral numbers and
+	 * strings representing them are normalized to long, e.g. both <code>"007"</code> and <code>7</code> are
+	 * <code>7L</code>. Otherwise all values are normalized to their string representation, so that <code>"007"</code>
+	 * and <code>7</code> are different keys.
+	 *
+	 * @param key key value, possible null,
+	 * @param numeric true if dimension key column is numeric.
+	 * @return normalized key, null if key is null.
+	 */
+	static Object normalizeKey(Object key, boolean numeric) {
+		if (key == null) {
+			return null;
+		}
+		if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+			long value = ((Number) key).longValue();
+			return numeric ? (Object) value : Long.toString(value);
+		}
+		if (key instanceof BigInteger) {
+			return numeric && ((BigInteger) key).bitLength() < 64 ? (Object) ((BigInteger) key).longValue() : key.toString();
+		}
+		if (key instanceof BigDecimal) {
+			if (numeric) {
+				try {
+					return ((BigDecimal) key).longValueExact();
+				} catch (ArithmeticException e) {
+				}
+			}
+			return ((BigDecimal) key).stripTrailingZeros().toPlainString();
+		}
+		if (key instanceof String) {
+			String string = ((String) key).trim();
+			if (numeric) {
+				try {
+					return Long.parseLong(string);
+				} catch (NumberFormatException e) {
+				}
+			}
+			return string;
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Open addressing hash map with primitive long keys and linear probing. Null values are supported; an empty slot has
+	 * null value and a slot with null value stores {@link #NULL} marker.
+	 *
+	 * @author Iulian Rotaru
+	 */
+	private static class LongObjectMap {
+		private static final Object NULL = new Object();
+
+		private long[] keys = new long[16];
+		private Object[] values = new Object[16];
+		private int size;
+
+		void put(long key, Object value) {
+			if (2 * (size + 1) > keys.length) {
+				rehash(2 * keys.length);
+			}
+			int slot = slot(key, keys.length);
+			while (values[slot] != null && keys[slot] != key) {
+				slot = (slot + 1) & (keys.length - 1);
+			}
+			if (values[slot] == null) {
+				++size;
+			}
+			keys[slot] = key;
+			values[slot] = value != null ? value : NULL;
+		}
+
+		boolean containsKey(long key) {
+			return values[find(key)] != null;
+		}
+
+		Object get(long key) {
+			Object value = values[find(key)];
+			return value != NULL ? value : null;
+		}
+
+		int size() {
+			return size;
+		}
+
+		/** Estimated memory size of keys and values arrays, values not included. */
+		long memorySize() {
+			return 32 + 12L * keys.length;
+		}
+
+		private int find(long key) {
+			int slot = slot(key, keys.length);
+			while (values[slot] != null && keys[slot] != key) {
+				slot = (slot + 1) & (keys.length - 1);
+			}
+			return slot;
+		}
+
+		private void rehash(int capacity) {
+			long[] oldKeys = keys;
+			Object[] oldValues = values;
+			keys = new long[capacity];
+			values = new Object[capacity];
+			for (int i = 0; i < oldKeys.length; ++i) {
+				if (oldValues[i] != null) {
+					int slot = slot(oldKeys[i], capacity);
+					while (values[slot] != null) {
+						slot = (slot + 1) & (capacity - 1);
+					}
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+			}
+		}
+
+		private static int slot(long key, int capacity) {
+			// mix high bits into low bits since sequential keys are common
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package com.jslib.etl.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.etl.DataRecord;
+import com.jslib.etl.EtlException;
+import com.jslib.etl.ILoader;
+
+/**
+ * Pipelined task execution with three stages connected by bounded queues: extractor stage reading source records on its
+ * own thread, a pool of transform workers applying transfer rules and loader stage, on caller thread, writing destination
+ * records. Records are passed between stages in chunks, every chunk with a sequence number.
+ * <p>
+ * If pipeline is ordered loader stage writes chunks in source order, buffering chunks completed out of order by transform
+ * workers. Note that order does not help transfer rules depending on records already loaded, e.g. last inserted ID, since
+ * transform workers still run ahead of loader; tasks with such rules are not executed on pipeline.
+ * <p>
+ * For every stage pipeline keeps the number of processed records and the time stage threads were stalled waiting for
+ * input or for room on output queue; statistics are logged when pipeline execution ends.
+ *
+ * @author Iulian Rotaru
+ */
+class Pipeline {
+	private static final Log log = LogFactory.getLog(Pipeline.class);
+
+	private static final int QUEUE_TIMEOUT = 1000;
+	/** Queues capacity, in chunks, for every transform worker. */
+	private static final int QUEUE_CHUNKS_PER_WORKER = 4;
+
+	private final String taskName;
+	private final int workersCount;
+	private final int chunkSize;
+	private final boolean ordered;
+
+	private final BlockingQueue<Chunk> transformQueue;
+	private final BlockingQueue<Chunk> loadQueue;
+
+	private final Stage extractStage;
+	private final Stage transformStage;
+	private final Stage loadStage;
+
+	private volatile Throwable failure;
+
+	public Pipeline(String taskName, int workersCount, int chunkSize, boolean ordered) {
+		this.taskName = taskName;
+		this.workersCount = Math.max(1, workersCount);
+		this.chunkSize = Math.max(1, chunkSize);
+		this.ordered = ordered;
+
+		this.transformQueue = new ArrayBlockingQueue<>(this.workersCount * QUEUE_CHUNKS_PER_WORKER);
+		this.loadQueue = new ArrayBlockingQueue<>(this.workersCount * QUEUE_CHUNKS_PER_WORKER);
+
+		this.extractStage = new Stage("extract");
+		this.transformStage = new Stage("transform");
+		this.loadStage = new Stage("load");
+	}
+
+	/**
+	 * Execute pipeline and wait for all stages to complete. If any stage fails, pipeline is aborted and the stage exception
+	 * is rethrown on caller thread.
+	 *
+	 * @param extractor source records,
+	 * @param transfer function applying transfer rules on a source record, invoked concurrently by transform workers,
+	 * @param loader destination records loader.
+	 * @return processed records count.
+	 * @throws Exception if pipeline execution fails.
+	 */
+	public int execute(Iterable<DataRecord> extractor, Function<DataRecord, DataRecord> transfer, ILoader loader) throws Exception {
+		long startNanos = System.nanoTime();
+		List<Thread> threads = new ArrayList<>();
+		threads.add(new Thread(() -> extract(extractor), "Extractor Thread"));
+		for (int i = 0; i < workersCount; ++i) {
+			threads.add(new Thread(() -> transform(transfer), "Transform Thread #" + i));
+		}
+		threads.forEach(Thread::start);
+
+		try {
+			load(loader);
+		} catch (Throwable e) {
+			abort(e);
+		} finally {
+			if (failure != null) {
+				threads.forEach(Thread::interrupt);
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		}
+
+		long elapsedNanos = System.nanoTime() - startNanos;
+		extractStage.report(elapsedNanos);
+		transformStage.report(elapsedNanos);
+		loadStage.report(elapsedNanos);
+
+		if (failure instanceof Exception) {
+			throw (Exception) failure;
+		}
+		if (failure != null) {
+			throw new EtlException(failure);
+		}
+		return (int) loadStage.records.sum();
+	}
+
+	private void extract(Iterable<DataRecord> extractor) {
+		try {
+			long sequence = 0;
+			List<DataRecord> records = new ArrayList<>(chunkSize);
+			for (DataRecord record : extractor) {
+				if (failure != null) {
+					return;
+				}
+				records.add(record);
+				if (records.size() == chunkSize) {
+					extractStage.records.add(records.size());
+					if (!put(transformQueue, new Chunk(sequence++, records), extractStage)) {
+						return;
+					}
+					records = new ArrayList<>(chunkSize);
+				}
+			}
+			if (!records.isEmpty()) {
+				extractStage.records.add(records.size());
+				if (!put(transformQueue, new Chunk(sequence, records), extractStage)) {
+					return;
+				}
+			}
+			// one end of stream marker for every transform worker
+			for (int i = 0; i < workersCount; ++i) {
+				if (!put(transformQueue, Chunk.END, extractStage)) {
+					return;
+				}
+			}
+		} catch (Throwable e) {
+			abort(e);
+		}
+	}
+
+	private void transform(Function<DataRecord, DataRecord> transfer) {
+		try {
+			for (;;) {
+				Chunk chunk = take(transformQueue, transformStage);
+				if (chunk == null) {
+					return;
+				}
+				if (chunk == Chunk.END) {
+					put(loadQueue, Chunk.END, transformStage);
+					return;
+				}
+
+				List<DataRecord> records = new ArrayList<>(chunk.records.size());
+				for (DataRecord record : chunk.records) {
+					records.add(transfer.apply(record));
+				}
+				transformStage.records.add(records.size());
+				if (!put(loadQueue, new Chunk(chunk.sequence, records), transformStage)) {
+					return;
+				}
+			}
+		} catch (Throwable e) {
+			abort(e);
+		}
+	}
+
+	private void load(ILoader loader) throws Exception {
+		// chunks completed by transform workers out of order, mapped by sequence; used only if pipeline is ordered
+		Map<Long, Chunk> pendingChunks = new HashMap<>();
+		long nextSequence = 0;
+
+		int endsCount = 0;
+		while (endsCount < workersCount) {
+			Chunk chunk = take(loadQueue, loadStage);
+			if (chunk == null) {
+				return;
+			}
+			if (chunk == Chunk.END) {
+				++endsCount;
+				continue;
+			}
+			if (!ordered) {
+				write(loader, chunk);
+				continue;
+			}
+
+			pendingChunks.put(chunk.sequence, chunk);
+			while ((chunk = pendingChunks.remove(nextSequence)) != null) {
+				write(loader, chunk);
+				++nextSequence;
+			}
+		}
+		if (!pendingChunks.isEmpty()) {
+			throw new IllegalStateException("Pipeline ended with missing chunk " + nextSequence);
+		}
+	}
+
+	private void write(ILoader loader, Chunk chunk) throws Exception {
+		for (DataRecord record : chunk.records) {
+			loader.write(record);
+		}
+		loadStage.records.add(chunk.records.size());
+	}
+
+	/**
+	 * Put chunk on queue, waiting for room, and account waiting time as stage stall. Returns false if pipeline was aborted
+	 * meanwhile.
+	 */
+	private boolean put(BlockingQueue<Chunk> queue, Chunk chunk, Stage stage) throws InterruptedException {
+		long startNanos = System.nanoTime();
+		try {
+			while (!queue.offer(chunk, QUEUE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				if (failure != null) {
+					return false;
+				}
+			}
+			return failure == null;
+		} finally {
+			stage.stalledNanos.add(System.nanoTime() - startNanos);
+		}
+	}
+
+	/**
+	 * Take chunk from queue, waiting for one to be available, and account waiting time as stage stall. Returns null if
+	 * pipeline was aborted meanwhile.
+	 */
+	private Chunk take(BlockingQueue<Chunk> queue, Stage stage) throws InterruptedException {
+		long startNanos = System.nanoTime();
+		try {
+			for (;;) {
+				Chunk chunk = queue.poll(QUEUE_TIMEOUT, TimeUnit.MILLISECONDS);
+				if (failure != null) {
+					return null;
+				}
+				if (chunk != null) {
+					return chunk;
+				}
+			}
+		} finally {
+			stage.stalledNanos.add(System.nanoTime() - startNanos);
+		}
+	}
+
+	private synchronized void abort(Throwable e) {
+		if (failure == null) {
+			log.error("Task '{task_name}' pipeline abort: {exception}", taskName, e);
+			failure = e;
+		}
+	}
+
+	private static class Chunk {
+		static final Chunk END = new Chunk(-1, Collections.emptyList());
+
+		final long sequence;
+		final List<DataRecord> records;
+
+		Chunk(long sequence, List<DataRecord> records) {
+			this.sequence = sequence;
+			this.records = records;
+		}
+	}
+
+	private class Stage {
+		final String name;
+		final LongAdder records = new LongAdder();
+		/** Time stage threads waited on queues, summed for all stage threads. */
+		final LongAdder stalledNanos = new LongAdder();
+
+		Stage(String name) {
+			this.name = name;
+		}
+
+		void report(long elapsedNanos) {
+			double seconds = Math.max(elapsedNanos, 1) / 1e9;
+			log.info("Task '{task_name}' {} stage processed {} records, {} records/s, stalled {} ms.", taskName, name, records.sum(), (long) (records.sum() / seconds), TimeUnit.NANOSECONDS.toMillis(stalledNanos.sum()));
+		}
+	}
+}
@@ -1,16 +1,17 @@
 package com.jslib.etl.impl;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Predicate;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import com.jslib.api.log.Log;
@@ -24,31 +25,51 @@ import com.jslib.etl.ITask;
 import com.jslib.etl.meta.ArgumentMeta;
 import com.jslib.etl.meta.ProjectMeta;
 import com.jslib.etl.meta.ServiceMeta;
+import com.jslib.etl.meta.ServiceType;
 
 public class Project implements IProject {
 	private static final Log log = LogFactory.getLog(Project.class);
 
+	/** Project constant with the maximum number of tasks executed concurrently; default to sequential execution. */
+	private static final String MAX_PARALLEL_TASKS_CONSTANT = "maxParallelTasks";
+
 	private final Converter converter;
 	private final Functions functions;
 
-	private final LinkedHashMap<String, Variable> variables;
+	/** Project variables, accessed concurrently by tasks; iteration should be synchronized on map instance. */
+	private final Map<String, Variable> variables;
 	private final List<Script> scripts;
+	/** Compiled templates for texts with variables injected, mapped by source text. */
+	private final Map<String, Template> templates;
+	/** Global variables evaluations, mapped by variable name, started on first variable reference. */
+	private final Map<String, CompletableFuture<Object>> evaluations;
+	/** Executor for global variables evaluations; independent variables are evaluated concurrently. */
+	private final ExecutorService evaluator;
 
 	private final Map<String, IDataSource> dataSources;
 	private final List<ITask> tasks;
+	private TaskGraph taskGraph;
 
 	public Project() {
 		this.converter = ConverterRegistry.getConverter();
 		this.functions = new Functions(this);
 
-		this.variables = new LinkedHashMap<>();
+		this.variables = Collections.synchronizedMap(new LinkedHashMap<>());
 		this.scripts = new ArrayList<>();
+		this.templates = new ConcurrentHashMap<>();
+		this.evaluations = new ConcurrentHashMap<>();
+		this.evaluator = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "Variables Evaluator");
+			thread.setDaemon(true);
+			return thread;
+		});
 		this.dataSources = new HashMap<>();
 		this.tasks = new ArrayList<>();
 	}
 
 	@Override
 	public void close() throws Exception {
+		evaluator.shutdownNow();
 		for(IDataSource dataSource:dataSources.values()) {
 			dataSource.close();
 		}
@@ -106,8 +127,11 @@ public class Project implements IProject {
 				throw new EtlException("Variable |%s| redefinition on section |%s|.", variableMeta.getName(), variableMeta.getSectionName());
 			}
 		});
-		evaluateVariables(variable -> variable.isGlobal());
-		variables.forEach((n, v) -> log.debug("{}: {}", n, v));
+		// global variables are evaluated lazily, on first reference; check now for circular references
+		synchronized (variables) {
+			variables.values().stream().filter(Variable::isGlobal).forEach(variable -> checkDependencies(variable, new ArrayList<>()));
+			variables.forEach((n, v) -> log.debug("{}: {}", n, v));
+		}
 
 		projectMeta.getScripts().forEach(scriptMeta -> {
 			String taskName = scriptMeta.getSectionName();
@@ -118,9 +142,29 @@ public class Project implements IProject {
 				taskName = null;
 			}
 			Script.Language language = Script.Language.forName(scriptMeta.getLanguage());
-			scripts.add(new Script(language, scriptMeta.getCode(), scope, taskName));
+			scripts.add(new Script(language, scriptMeta.getCode(), isMySqlScript(language, scriptMeta.getCode()), scope, taskName));
 		});
 		runScripts(script -> script.isGlobal());
+
+		synchronized (variables) {
+			taskGraph = new TaskGraph(projectMeta.getTasksMeta(), tasks, new ArrayList<>(variables.values()), scripts);
+		}
+	}
+
+	@Override
+	public boolean execute() throws InterruptedException {
+		Variable maxParallelTasks = variables.get(MAX_PARALLEL_TASKS_CONSTANT);
+		int parallelism = maxParallelTasks != null ? converter.asObject(converter.asString(maxParallelTasks.getValue()), int.class) : 1;
+		if (parallelism <= 1) {
+			for (ITask task : tasks) {
+				if (!task.execute()) {
+					return false;
+				}
+			}
+			return true;
+		}
+		log.debug("Execute tasks with max parallelism {}.", parallelism);
+		return taskGraph.execute(parallelism);
 	}
 
 	@Override
@@ -207,61 +251,136 @@ public class Project implements IProject {
 	// --------------------------------------------------------------------------------------------
 
 	private void evaluateVariables(Predicate<Variable> filter) {
-		for (Variable variable : variables.values().stream().filter(filter).collect(Collectors.toList())) {
-			String expression = injectVariables(variable.getExpression());
-			Object value = functions.invoke(expression);
-			if (value != null) {
-				log.debug("Evaluate variable {} value to {}.", variable.getName(), value);
-				variables.get(variable.getName()).setValue(value);
-			}
+		List<Variable> filteredVariables;
+		synchronized (variables) {
+			filteredVariables = variables.values().stream().filter(filter).collect(Collectors.toList());
+		}
+		for (Variable variable : filteredVariables) {
+			evaluate(variable);
 		}
 	}
 
 	@Override
 	public Object getVariableValue(String name) {
 		// on source code, variable name starts with dollar
-		Variable variable = variables.get(name.substring(1));
+		Variable variable = variable(name.substring(1));
 		if (variable == null) {
 			throw new EtlException("Variable %s not defined.", name);
 		}
 		return variable.getValue();
 	}
 
-	private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$(\\w+)");
+	/**
+	 * Get variable by name, evaluating it first if is a global variable not yet evaluated. Returns null if variable is not
+	 * defined.
+	 */
+	private Variable variable(String name) {
+		Variable variable = variables.get(name);
+		if (variable != null && variable.isGlobal()) {
+			try {
+				evaluation(variable).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new EtlException(e.getCause());
+			}
+		}
+		return variable;
+	}
+
+	/**
+	 * Get global variable evaluation, starting it if not already started. Evaluation starts after all global variables
+	 * referenced by variable expression are evaluated; evaluations of referenced variables are started concurrently.
+	 * Circular references are rejected when project meta is parsed, see {@link #checkDependencies(Variable, List)}.
+	 */
+	private CompletableFuture<Object> evaluation(Variable variable) {
+		CompletableFuture<Object> evaluation = evaluations.get(variable.getName());
+		if (evaluation != null) {
+			return evaluation;
+		}
+
+		// dependencies evaluations are started outside map computation since it should not update the map
+		List<CompletableFuture<Object>> dependencies = new ArrayList<>();
+		for (Variable dependency : globalDependencies(variable)) {
+			dependencies.add(evaluation(dependency));
+		}
+		CompletableFuture<?>[] dependenciesArray = dependencies.toArray(new CompletableFuture[0]);
+		return evaluations.computeIfAbsent(variable.getName(), name -> CompletableFuture.allOf(dependenciesArray).thenApplyAsync(ignored -> evaluate(variable), evaluator));
+	}
+
+	private Object evaluate(Variable variable) {
+		// functions inject or bind variables referenced by expression
+		Object value = functions.invoke(variable.getExpression());
+		if (value != null) {
+			log.debug("Evaluate variable {} value to {}.", variable.getName(), value);
+			variable.setValue(value);
+		}
+		return value;
+	}
+
+	/** Get global variables referenced by variable expression. */
+	private List<Variable> globalDependencies(Variable variable) {
+		List<Variable> dependencies = new ArrayList<>();
+		for (String name : new Template(variable.getExpression()).getVariableNames()) {
+			Variable dependency = variables.get(name);
+			if (dependency != null && dependency.isGlobal() && !dependencies.contains(dependency)) {
+				dependencies.add(dependency);
+			}
+		}
+		return dependencies;
+	}
+
+	private void checkDependencies(Variable variable, List<String> path) {
+		if (path.contains(variable.getName())) {
+			path.add(variable.getName());
+			throw new EtlException("Circular references between variables %s.", path);
+		}
+		path.add(variable.getName());
+		for (Variable dependency : globalDependencies(variable)) {
+			checkDependencies(dependency, path);
+		}
+		path.remove(path.size() - 1);
+	}
 
 	public String injectVariables(String text) {
 		if (text == null) {
 			return null;
 		}
-		StringBuffer buffer = new StringBuffer();
-
-		Matcher matcher = VARIABLE_PATTERN.matcher(text);
-		while (matcher.find()) {
-			Variable variable = variables.get(matcher.group(1));
-			if (variable != null) {
-				String replacement = converter.asString(variable.getValue());
-				matcher.appendReplacement(buffer, "");
-				buffer.append(replacement);
-			}
+		Template template = templates.get(text);
+		if (template == null) {
+			template = templates.computeIfAbsent(text, Template::new);
 		}
-
-		matcher.appendTail(buffer);
-		return buffer.toString();
+		return template.render(this::variable, converter);
 	}
 
 	// --------------------------------------------------------------------------------------------
 
+	/**
+	 * Test if SQL script runs on a MySQL data source, in which case it is split using MySQL lexical rules. Script data source
+	 * is detected from statements split with standard rules; qualified table names are not affected by dialect.
+	 */
+	private boolean isMySqlScript(Script.Language language, String code) {
+		if (language != Script.Language.SQL) {
+			return false;
+		}
+		String dataSourceName = Functions.scriptDataSourceName(SqlSplitter.split(code));
+		if (dataSourceName == null) {
+			return false;
+		}
+		IDataSource dataSource = dataSources.get(dataSourceName.toLowerCase());
+		return dataSource != null && dataSource.getType() == ServiceType.MYSQL;
+	}
+
 	private void runScripts(Predicate<Script> filter) {
 		for (Script script : scripts.stream().filter(filter).collect(Collectors.toList())) {
-			String code = injectVariables(script.getCode());
 			if (script.getLanguage() != Script.Language.SQL) {
 				throw new EtlException("Not supported script language |%s|.", script.getLanguage());
 			}
-			try (BufferedReader reader = new BufferedReader(new StringReader(code))) {
-				functions.executeSql(reader.readLine());
-			} catch (IOException e) {
-				throw new EtlException("Error reading script code.");
-			}
+			long startTimeMillis = System.currentTimeMillis();
+			// functions inject referenced variables; single SQL expression script binds them
+			functions.executeScript(script.getStatements());
+			log.info("Run {} SQL script of task '{task_name}' with {} statements in {processing_time} seconds.", script.getScope(), script.getTaskName(), script.getStatements().size(), (System.currentTimeMillis() - startTimeMillis) / 1000.0);
 		}
 	}
 }
@@ -0,0 +1,18 @@
+package com.jslib.etl.impl;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a built in function as pure, that is, function result depends only on its arguments and function has no side
+ * effects. A function chain with only pure functions can have its results cached by transformers, see
+ * {@link Functions.Chain#isPure()}.
+ *
+ * @author Iulian Rotaru
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@interface Pure {
+}
@@ -1,15 +1,21 @@
 package com.jslib.etl.impl;
 
+import java.util.Collections;
+import java.util.List;
+
 public class Script {
 	private final Language language;
 	private final String code;
+	/** SQL script statements, split once on statement terminators; empty list if script language is not SQL. */
+	private final List<String> statements;
 	private final Scope scope;
 	/** Optional name of the task owner. Null if this script is global. */
 	private final String taskName;
 
-	public Script(Language language, String code, Scope scope, String taskName) {
+	public Script(Language language, String code, boolean mysql, Scope scope, String taskName) {
 		this.language = language;
 		this.code = code;
+		this.statements = language == Language.SQL ? SqlSplitter.split(code, mysql) : Collections.emptyList();
 		this.scope = scope;
 		this.taskName = taskName;
 	}
@@ -22,6 +28,10 @@ public class Script {
 		return code;
 	}
 
+	public List<String> getStatements() {
+		return statements;
+	}
+
 	public Scope getScope() {
 		return scope;
 	}
@@ -2,25 +2,59 @@ package com.jslib.etl.impl;
 
 import static com.jslib.util.Strings.join;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.util.PSQLException;
+import org.postgresql.util.ServerErrorMessage;
+
 import com.jslib.api.log.Log;
 import com.jslib.api.log.LogFactory;
 import com.jslib.converter.Converter;
@@ -28,16 +62,20 @@ import com.jslib.converter.ConverterException;
 import com.jslib.converter.ConverterRegistry;
 import com.jslib.etl.DataRecord;
 import com.jslib.etl.EtlException;
+import com.jslib.etl.ExtractorException;
 import com.jslib.etl.IDataSource;
 import com.jslib.etl.IExtractor;
 import com.jslib.etl.ILoader;
 import com.jslib.etl.IQueueElement;
 import com.jslib.etl.LoaderException;
+import com.jslib.etl.RecordBatch;
+import com.jslib.etl.RecordSchema;
 import com.jslib.etl.meta.MetaProperties;
 import com.jslib.etl.meta.ServiceMeta;
 import com.jslib.etl.meta.ServiceType;
 import com.jslib.util.Classes;
 import com.jslib.util.Strings;
+import com.mchange.v2.c3p0.C3P0ProxyConnection;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 
 public class SqlDataSource implements IDataSource {
@@ -45,16 +83,50 @@ public class SqlDataSource implements IDataSource {
 
 	private static final String NAME_PROPERTY = "name";
 	private static final String BATCH_SIZE_PROPERTY = "batchSize";
+	private static final String FETCH_SIZE_PROPERTY = "fetchSize";
+	private static final String COPY_BATCH_SIZE_PROPERTY = "copyBatchSize";
+	private static final String COMMIT_INTERVAL_PROPERTY = "commitInterval";
+	private static final String LOADER_QUEUE_SIZE_PROPERTY = "loaderQueueSize";
+	private static final String LOADER_QUEUE_MEMORY_PROPERTY = "loaderQueueMemory";
+	private static final String LOADER_WRITERS_PROPERTY = "loaderWriters";
+	private static final String EXTRACTOR_MODE_PROPERTY = "extractorMode";
+	private static final String EXTRACTOR_PREFETCH_PROPERTY = "extractorPrefetch";
+	private static final String EXTRACTOR_PARTITIONS_PROPERTY = "extractorPartitions";
+	private static final String EXTRACTOR_PARTITION_COLUMN_PROPERTY = "extractorPartitionColumn";
+	private static final String LOADER_MODE_PROPERTY = "loaderMode";
+	private static final String SPEED_OPTIMIZATION_PROPERTY = "speedOptimization";
+	private static final String LOADER_PARTITION_KEY_PROPERTY = "loaderPartitionKey";
+	private static final String LOOKUP_BATCH_SIZE_PROPERTY = "lookupBatchSize";
 
 	private static final int BATCH_SIZE = 100;
+	private static final int COPY_BATCH_SIZE = 10000;
+	private static final int LOADER_QUEUE_SIZE = 10000;
+	private static final int EXTRACTOR_PARTITIONS = 4;
+	private static final int LOOKUP_BATCH_SIZE = 1000;
+	private static final int MAX_STATEMENTS_PER_CONNECTION = 100;
 
 	private final ServiceType type;
 	private final String name;
 	private final int batchSize;
+	private final int fetchSize;
+	private final int copyBatchSize;
+	/** Number of records grouped into a transaction by batch loaders, zero for auto commit on every batch. */
+	private final int commitInterval;
+	/** Maximum number of records waiting on batch loader queue, zero for unbounded. */
+	private final int loaderQueueSize;
+	/** Estimated memory budget, in bytes, for records waiting on batch loader queue, zero for no memory limit. */
+	private final long loaderQueueMemory;
+	/** Number of writer threads, each with its own connection, used by batch loaders. */
+	private final int loaderWriters;
+	/** Maximum number of keys in the IN list of a lookup query. */
+	private final int lookupBatchSize;
 
 	private final ComboPooledDataSource dataSource;
-	private final Map<String, String> primaryKeys;
+	/** Primary key columns mapped by table name, in key sequence order; empty list if table has no primary key. */
+	private final Map<String, List<String>> primaryKeys;
 	private final Map<String, Object> lastInsertedIds;
+	/** Missing jTDS server cursor warning is logged once per data source. */
+	private volatile boolean cursorWarningLogged;
 
 	public SqlDataSource(ServiceMeta serviceMeta) {
 		this.type = serviceMeta.getType();
@@ -62,9 +134,18 @@ public class SqlDataSource implements IDataSource {
 		MetaProperties properties = serviceMeta.getProperties();
 		this.name = properties.get(NAME_PROPERTY);
 		this.batchSize = properties.get(BATCH_SIZE_PROPERTY, int.class, BATCH_SIZE);
+		this.fetchSize = properties.get(FETCH_SIZE_PROPERTY, int.class, batchSize);
+		this.copyBatchSize = properties.get(COPY_BATCH_SIZE_PROPERTY, int.class, COPY_BATCH_SIZE);
+		this.commitInterval = properties.get(COMMIT_INTERVAL_PROPERTY, int.class, 0);
+		this.loaderQueueSize = properties.get(LOADER_QUEUE_SIZE_PROPERTY, int.class, LOADER_QUEUE_SIZE);
+		this.loaderQueueMemory = properties.get(LOADER_QUEUE_MEMORY_PROPERTY, long.class, 0L);
+		this.loaderWriters = properties.get(LOADER_WRITERS_PROPERTY, int.class, 1);
+		this.lookupBatchSize = properties.get(LOOKUP_BATCH_SIZE_PROPERTY, int.class, LOOKUP_BATCH_SIZE);
 
 		final Converter converter = ConverterRegistry.getConverter();
 		this.dataSource = new ComboPooledDataSource();
+		// enable prepared statements cache by default; it can be overridden by data source properties
+		this.dataSource.setMaxStatementsPerConnection(MAX_STATEMENTS_PER_CONNECTION);
 		properties.forEach((name, value) -> {
 			try {
 				Method method = Classes.findMethod(this.dataSource.getClass(), Strings.getMethodAccessor("set", name));
@@ -76,8 +157,8 @@ public class SqlDataSource implements IDataSource {
 			}
 		});
 
-		this.primaryKeys = new HashMap<>();
-		this.lastInsertedIds = new HashMap<>();
+		this.primaryKeys = new ConcurrentHashMap<>();
+		this.lastInsertedIds = new ConcurrentHashMap<>();
 	}
 
 	@Override
@@ -117,27 +198,56 @@ public class SqlDataSource implements IDataSource {
 		}
 	}
 
-	private String getPrimaryKey(String tableName) {
-		String tablePrimaryKey = primaryKeys.get(tableName);
-		if (tablePrimaryKey == null) {
+	private List<String> getPrimaryKeyColumns(String tableName) {
+		List<String> columns = primaryKeys.get(tableName);
+		if (columns == null) {
 			synchronized (this) {
-				tablePrimaryKey = primaryKeys.get(tableName);
-				if (tablePrimaryKey == null) {
+				columns = primaryKeys.get(tableName);
+				if (columns == null) {
 					try (Connection connection = dataSource.getConnection()) {
 						DatabaseMetaData dbmeta = connection.getMetaData();
-						ResultSet rs = dbmeta.getPrimaryKeys(null, null, tableName);
-						while (rs.next()) {
-							tablePrimaryKey = rs.getString("COLUMN_NAME");
-							log.debug("Table {} primary key: {}.", tableName, tablePrimaryKey);
-							primaryKeys.put(tableName, tablePrimaryKey);
+						// result set is ordered by column name; key sequence gives columns order into composite key
+						Map<Integer, String> keyColumns = new TreeMap<>();
+						try (ResultSet rs = dbmeta.getPrimaryKeys(null, null, tableName)) {
+							while (rs.next()) {
+								keyColumns.put(rs.getInt("KEY_SEQ"), rs.getString("COLUMN_NAME"));
+							}
 						}
+						columns = Collections.unmodifiableList(new ArrayList<>(keyColumns.values()));
+						log.debug("Table {} primary key: {}.", tableName, columns);
+						primaryKeys.put(tableName, columns);
 					} catch (SQLException e) {
 						throw new EtlException(e);
 					}
 				}
 			}
 		}
-		return tablePrimaryKey;
+		return columns;
+	}
+
+	/**
+	 * Get primary key column name for table with a single column primary key, or null if table has no primary key. For
+	 * composite primary key returns the last key column, as used by loaders to detect records carrying the key; use
+	 * {@link #getSinglePrimaryKey(String)} when key column should identify rows.
+	 */
+	private String getPrimaryKey(String tableName) {
+		List<String> columns = getPrimaryKeyColumns(tableName);
+		return columns.isEmpty() ? null : columns.get(columns.size() - 1);
+	}
+
+	/**
+	 * Get single column primary key, used by keyset paging and range partitions that need a column identifying rows.
+	 *
+	 * @param tableName table name.
+	 * @return primary key column name or null if table has no primary key.
+	 * @throws EtlException if table has composite primary key.
+	 */
+	private String getSinglePrimaryKey(String tableName) {
+		List<String> columns = getPrimaryKeyColumns(tableName);
+		if (columns.size() > 1) {
+			throw new EtlException("Composite primary key %s on table %s is not supported by keyset or partitioned extractor.", columns, tableName);
+		}
+		return columns.isEmpty() ? null : columns.get(0);
 	}
 
 	private boolean isPrimaryKey(String tableName, String columnName) {
@@ -152,15 +262,65 @@ public class SqlDataSource implements IDataSource {
 		return new Extractor(tableName, columnNames, whereClause.length > 0 ? whereClause[0] : null);
 	}
 
+	@Override
+	public IExtractor extractor(String tableName, List<String> columnNames, MetaProperties properties, String... whereClause) {
+		ExtractorMode mode = ExtractorMode.forName(properties.get(EXTRACTOR_MODE_PROPERTY, ExtractorMode.OFFSET.name()));
+		String where = whereClause.length > 0 ? whereClause[0] : null;
+
+		switch (mode) {
+		case OFFSET:
+			return prefetch(new Extractor(tableName, columnNames, where), properties);
+
+		case KEYSET:
+			return prefetch(new KeysetExtractor(tableName, columnNames, where), properties);
+
+		case STREAM:
+			return new StreamExtractor(tableName, columnNames, where);
+
+		case PARTITION:
+			int partitions = properties.get(EXTRACTOR_PARTITIONS_PROPERTY, int.class, EXTRACTOR_PARTITIONS);
+			String partitionColumn = properties.get(EXTRACTOR_PARTITION_COLUMN_PROPERTY);
+			if (partitionColumn == null) {
+				partitionColumn = getSinglePrimaryKey(tableName);
+			}
+			if (partitionColumn == null) {
+				throw new EtlException("Partitioned extractor requires primary key or partition column on table %s.", tableName);
+			}
+			return new PartitionedExtractor(tableName, columnNames, where, partitionColumn, partitions);
+
+		default:
+			throw new IllegalStateException("Not handled extractor mode " + mode);
+		}
+	}
+
+	private IExtractor prefetch(Extractor extractor, MetaProperties properties) {
+		int pages = properties.get(EXTRACTOR_PREFETCH_PROPERTY, int.class, 0);
+		return pages > 0 ? new PrefetchExtractor(extractor, pages) : extractor;
+	}
+
+	private StringBuilder selectClause(String tableName, List<String> columnNames) {
+		StringBuilder sqlBuilder = new StringBuilder();
+		sqlBuilder.append("SELECT ");
+		sqlBuilder.append(join(columnNames, ','));
+		sqlBuilder.append(" FROM ");
+		sqlBuilder.append(getEscapeChar());
+		sqlBuilder.append(tableName);
+		sqlBuilder.append(getEscapeChar());
+		return sqlBuilder;
+	}
+
 	private class Extractor implements IExtractor, Iterator<DataRecord> {
-		private final String tableName;
-		private final List<String> columnNames;
-		private final String whereClause;
+		protected final String tableName;
+		protected final List<String> columnNames;
+		protected final String whereClause;
+		/** Schema shared by all extracted records, with ordinals in select clause order. */
+		protected final RecordSchema schema;
 
 		public Extractor(String tableName, List<String> columnNames, String whereClause) {
 			this.tableName = tableName;
 			this.columnNames = columnNames;
 			this.whereClause = whereClause;
+			this.schema = new RecordSchema(columnNames);
 		}
 
 		private List<DataRecord> values = Collections.emptyList();
@@ -177,7 +337,6 @@ public class SqlDataSource implements IDataSource {
 			if (valuesIterator == null || !valuesIterator.hasNext()) {
 				values = selectDataRecords();
 				valuesIterator = values.iterator();
-				valuesOffset += values.size();
 			}
 			return valuesIterator.hasNext();
 		}
@@ -187,14 +346,8 @@ public class SqlDataSource implements IDataSource {
 			return valuesIterator.next();
 		}
 
-		private List<DataRecord> selectDataRecords() {
-			StringBuilder sqlBuilder = new StringBuilder();
-			sqlBuilder.append("SELECT ");
-			sqlBuilder.append(join(columnNames, ','));
-			sqlBuilder.append(" FROM ");
-			sqlBuilder.append(getEscapeChar());
-			sqlBuilder.append(tableName);
-			sqlBuilder.append(getEscapeChar());
+		protected List<DataRecord> selectDataRecords() {
+			StringBuilder sqlBuilder = selectClause(tableName, columnNames);
 			if (whereClause != null) {
 				sqlBuilder.append(" WHERE ");
 				sqlBuilder.append(whereClause);
@@ -212,7 +365,8 @@ public class SqlDataSource implements IDataSource {
 
 			case MSSQL:
 				sqlBuilder.append(" ORDER BY ");
-				sqlBuilder.append(getPrimaryKey(tableName));
+				// all columns of a composite key are required for a stable rows order
+				sqlBuilder.append(join(getPrimaryKeyColumns(tableName), ','));
 				sqlBuilder.append(" OFFSET ");
 				sqlBuilder.append(valuesOffset);
 				sqlBuilder.append(" ROWS FETCH NEXT ");
@@ -224,306 +378,2062 @@ public class SqlDataSource implements IDataSource {
 				break;
 			}
 
+			List<DataRecord> records = select(sqlBuilder.toString(), schema);
+			valuesOffset += records.size();
+			return records;
+		}
+
+		/**
+		 * Select records with columns defined by given schema, that should match select clause columns order.
+		 */
+		protected List<DataRecord> select(String sql, RecordSchema selectSchema, Object... parameters) {
 			List<DataRecord> records = new ArrayList<>();
 			try ( //
 					Connection connection = SqlDataSource.this.dataSource.getConnection(); //
-					Statement statement = connection.createStatement(); //
-					ResultSet result = statement.executeQuery(sqlBuilder.toString()); //
+					PreparedStatement statement = connection.prepareStatement(sql); //
 			) {
 				connection.setAutoCommit(true);
-				while (result.next()) {
-					DataRecord record = new DataRecord();
-					for (String columnName : columnNames) {
-						record.put(columnName, result.getObject(columnName));
+				for (int i = 0; i < parameters.length; ++i) {
+					statement.setObject(i + 1, parameters[i]);
+				}
+				try (ResultSet result = statement.executeQuery()) {
+					int columnsCount = selectSchema.size();
+					while (result.next()) {
+						DataRecord record = new DataRecord(selectSchema);
+						for (int i = 0; i < columnsCount; ++i) {
+							record.set(i, result.getObject(i + 1));
+						}
+						records.add(record);
 					}
-					records.add(record);
 				}
 			} catch (SQLException e) {
 				log.error(e);
 				return Collections.emptyList();
 			}
-			log.debug("{} found {} records: {__SQL__}", name, records.size(), sqlBuilder.toString());
+			log.debug("{} found {} records: {__SQL__}", name, records.size(), sql);
 			return records;
 		}
 	}
 
-	// --------------------------------------------------------------------------------------------
-	// ILoader implementation
-
-	@Override
-	public ILoader loader(String tableName) {
-		return new BatchLoader(tableName);
-	}
+	/**
+	 * Extractor using keyset pagination, also known as seek method. Instead of skipping already read rows with an offset,
+	 * every page is selected starting after the last seen primary key, so that database can use primary key index and page
+	 * cost does not grow with table size. Primary key is added to selected columns if not already present.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private class KeysetExtractor extends Extractor {
+		private final String primaryKey;
+		private final List<String> selectColumns;
+		private final RecordSchema selectSchema;
+		private final int primaryKeyOrdinal;
+
+		private Object lastSeenKey;
+
+		public KeysetExtractor(String tableName, List<String> columnNames, String whereClause) {
+			super(tableName, columnNames, whereClause);
+			this.primaryKey = getSinglePrimaryKey(tableName);
+			if (this.primaryKey == null) {
+				throw new EtlException("Keyset paging requires primary key on table %s.", tableName);
+			}
 
-	@Override
-	public ILoader loader(String tableName, boolean speedOptimization) {
-		if (speedOptimization) {
-			return new BatchLoader(tableName);
+			this.selectColumns = new ArrayList<>(columnNames);
+			if (!this.selectColumns.contains(this.primaryKey)) {
+				this.selectColumns.add(this.primaryKey);
+			}
+			this.selectSchema = new RecordSchema(this.selectColumns);
+			this.primaryKeyOrdinal = this.selectSchema.ordinal(this.primaryKey);
 		}
-		return new Loader(tableName);
-	}
 
-	private class Loader implements ILoader {
-		protected final String tableName;
+		@Override
+		protected List<DataRecord> selectDataRecords() {
+			StringBuilder sqlBuilder = selectClause(tableName, selectColumns);
+			if (whereClause != null || lastSeenKey != null) {
+				sqlBuilder.append(" WHERE ");
+			}
+			if (whereClause != null) {
+				sqlBuilder.append('(');
+				sqlBuilder.append(whereClause);
+				sqlBuilder.append(')');
+			}
+			if (lastSeenKey != null) {
+				if (whereClause != null) {
+					sqlBuilder.append(" AND ");
+				}
+				sqlBuilder.append(primaryKey);
+				sqlBuilder.append(">?");
+			}
+			sqlBuilder.append(" ORDER BY ");
+			sqlBuilder.append(primaryKey);
 
-		public Loader(String tableName) {
-			this.tableName = tableName;
-		}
+			switch (type) {
+			case MYSQL:
+			case POSTGRESQL:
+			case SQLITE:
+				sqlBuilder.append(" LIMIT ");
+				sqlBuilder.append(SqlDataSource.this.batchSize);
+				break;
 
-		@Override
-		public void write(DataRecord record) throws SQLException {
-			QueryMeta query = createQuery(record);
-			log.trace("{} query: {SQL}", name, query.sql);
+			case MSSQL:
+				sqlBuilder.append(" OFFSET 0 ROWS FETCH NEXT ");
+				sqlBuilder.append(SqlDataSource.this.batchSize);
+				sqlBuilder.append(" ROWS ONLY");
+				break;
 
-			try ( //
-					Connection connection = dataSource.getConnection(); //
-					PreparedStatement statement = connection.prepareStatement(query.sql, Statement.RETURN_GENERATED_KEYS); //
-			) {
-				connection.setAutoCommit(true);
-				for (int i = 0; i < query.columnNames.size(); ++i) {
-					statement.setObject(i + 1, record.get(query.columnNames.get(i)));
-				}
-				if (statement.executeUpdate() != 1) {
-					log.error("{} insert fails.", name);
-				}
+			default:
+				break;
+			}
 
-				if (query.insert) {
-					try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-						if (generatedKeys.next()) {
-							lastInsertedIds.put(tableName, generatedKeys.getLong(1));
-						} else {
-							throw new SQLException("Fail to get generated key.");
-						}
-					}
-				}
-			} catch (SQLException e) {
-				if (e.getSQLState().equals("23505")) {
-					log.debug(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
-				} else {
-					log.fatal("{exception}:{SQL}", e, query.sql);
-					throw e;
-				}
+			List<DataRecord> records = lastSeenKey != null ? select(sqlBuilder.toString(), selectSchema, lastSeenKey) : select(sqlBuilder.toString(), selectSchema);
+			if (!records.isEmpty()) {
+				lastSeenKey = records.get(records.size() - 1).get(primaryKeyOrdinal);
 			}
+			return records;
 		}
+	}
 
-		@Override
-		public void close() {
-		}
+	/**
+	 * Double buffered decorator for page based extractors. Next pages are selected on a background thread while current page
+	 * is processed by task; the number of pages buffered ahead is bounded. An empty page signals end of data.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private class PrefetchExtractor implements IExtractor, Iterator<DataRecord>, Runnable {
+		private final Extractor extractor;
+		private final BlockingQueue<List<DataRecord>> pages;
+		private final Thread thread;
 
-		protected QueryMeta createQuery(DataRecord record) {
-			String primaryKey = null;
+		private Iterator<DataRecord> valuesIterator = Collections.emptyIterator();
+		private boolean ended;
+		private volatile boolean closed;
+		private volatile Throwable exception;
 
-			QueryMeta query = new QueryMeta();
-			query.columnNames = new ArrayList<>();
-			List<String> wildcards = new ArrayList<>();
+		public PrefetchExtractor(Extractor extractor, int pagesCount) {
+			this.extractor = extractor;
+			this.pages = new ArrayBlockingQueue<>(pagesCount);
+			this.thread = new Thread(this, "Prefetch Thread");
+			this.thread.setDaemon(true);
+		}
 
-			// optimize for insert which is by far the most used use case
-			for (String columnName : record.columnNames()) {
-				if (isPrimaryKey(tableName, columnName)) {
-					primaryKey = columnName;
-					query.insert = false;
-				} else {
-					query.columnNames.add(columnName);
-					wildcards.add("?");
-				}
+		@Override
+		public Iterator<DataRecord> iterator() {
+			if (thread.getState() == Thread.State.NEW) {
+				thread.start();
 			}
+			return this;
+		}
 
-			if (primaryKey == null) {
-				StringBuilder sql = new StringBuilder();
-				sql.append("INSERT INTO ");
-				sql.append(getEscapeChar());
-				sql.append(tableName);
-				sql.append(getEscapeChar());
-
-				sql.append("(");
-				for (int i = 0; i < query.columnNames.size(); ++i) {
-					if (i > 0) {
-						sql.append(',');
+		@Override
+		public void run() {
+			try {
+				for (;;) {
+					List<DataRecord> page = extractor.selectDataRecords();
+					pages.put(page);
+					if (page.isEmpty() || closed) {
+						break;
 					}
-					sql.append(query.columnNames.get(i));
 				}
-				sql.append(") VALUES(");
-
-				for (int i = 0; i < query.columnNames.size(); ++i) {
-					if (i > 0) {
-						sql.append(',');
+			} catch (InterruptedException e) {
+				log.debug("Prefetch thread interrupted.");
+			} catch (Throwable e) {
+				log.error(e);
+				exception = e;
+				try {
+					if (!closed) {
+						pages.put(Collections.emptyList());
 					}
-					sql.append('?');
+				} catch (InterruptedException unused) {
 				}
-				sql.append(')');
+			}
+		}
 
-				if (type == ServiceType.POSTGRESQL) {
-					// sql.append(" RETURNING ");
-					// sql.append(getPrimaryKey(tableName));
+		@Override
+		public boolean hasNext() {
+			while (!valuesIterator.hasNext() && !ended) {
+				List<DataRecord> page;
+				try {
+					page = pages.take();
+				} catch (InterruptedException e) {
+					// consumer thread is interrupted, e.g. task cancellation; preserve interrupt status for caller
+					Thread.currentThread().interrupt();
+					close();
+					throw new ExtractorException(e);
 				}
-				query.sql = sql.toString();
-			} else {
-				StringBuilder sql = new StringBuilder();
-				sql.append("UPDATE ");
-				sql.append(getEscapeChar());
-				sql.append(tableName);
-				sql.append(getEscapeChar());
-				sql.append(" SET ");
-
-				for (int i = 0; i < query.columnNames.size(); ++i) {
-					if (i > 0) {
-						sql.append(',');
+				if (page.isEmpty()) {
+					ended = true;
+					if (exception != null) {
+						throw new ExtractorException(exception);
 					}
-					sql.append(query.columnNames.get(i));
-					sql.append("=?");
 				}
-
-				sql.append(" WHERE ");
-				sql.append(primaryKey);
-				sql.append("=?");
-
-				query.sql = sql.toString();
-				query.columnNames.add(primaryKey);
+				valuesIterator = page.iterator();
 			}
+			return valuesIterator.hasNext();
+		}
 
-			return query;
+		@Override
+		public DataRecord next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return valuesIterator.next();
 		}
 
-		protected class QueryMeta {
-			String sql;
-			List<String> columnNames;
-			boolean insert = true;
+		@Override
+		public void close() {
+			closed = true;
+			thread.interrupt();
+			pages.clear();
 		}
 	}
 
-	private class BatchLoader extends Loader implements Runnable {
-		// 30 minutes indeed
-		private static final int DESTROY_TIMEOUT = 30 * 60 * 1000;
-
-		private final BlockingQueue<IQueueElement> queue;
-		private final Thread thread;
-		private volatile Throwable exception;
-
-		public BatchLoader(String tableName) {
-			super(tableName);
-
-			this.queue = new LinkedBlockingQueue<>();
+	/**
+	 * Extractor keeping a single connection and result set open for the whole task, streaming rows with a driver specific
+	 * fetch size. Connection is released when result set is exhausted or on extractor close.
+	 * <p>
+	 * PostgreSQL driver uses a cursor only if auto commit is disabled and fetch size is positive. MySQL driver streams rows
+	 * for {@link Integer#MIN_VALUE} fetch size or, if <code>useCursorFetch=true</code> is present on JDBC URL, uses server
+	 * cursor with configured fetch size. jTDS uses server cursor for forward only, read only result sets if
+	 * <code>useCursors=true</code> is present on JDBC URL; otherwise memory usage is not bounded and a warning is logged.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private class StreamExtractor implements IExtractor, Iterator<DataRecord> {
+		private final RecordSchema schema;
+		private final String sql;
+
+		private Connection connection;
+		private PreparedStatement statement;
+		private ResultSet result;
+
+		/** Flag true if result set cursor was advanced and current row not yet consumed. */
+		private boolean fetched;
+		private boolean available;
+		private int recordsCount;
+
+		public StreamExtractor(String tableName, List<String> columnNames, String whereClause) {
+			this.schema = new RecordSchema(columnNames);
+
+			StringBuilder sqlBuilder = selectClause(tableName, columnNames);
+			if (whereClause != null) {
+				sqlBuilder.append(" WHERE ");
+				sqlBuilder.append(whereClause);
+			}
+			this.sql = sqlBuilder.toString();
+		}
 
-			this.thread = new Thread(this, "Loader Thread");
-			this.thread.setDaemon(false);
-			this.thread.start();
+		@Override
+		public Iterator<DataRecord> iterator() {
+			if (connection == null) {
+				try {
+					connection = dataSource.getConnection();
+					statement = prepareStreamingStatement(connection, sql);
+					result = statement.executeQuery();
+				} catch (SQLException e) {
+					log.fatal("{exception}:{SQL}", e, sql);
+					close();
+					throw new ExtractorException(e);
+				}
+				log.debug("{} open stream: {__SQL__}", name, sql);
+			}
+			return this;
 		}
 
 		@Override
-		public void write(DataRecord record) {
-			for (;;) {
+		public boolean hasNext() {
+			if (!fetched) {
+				if (result == null) {
+					return false;
+				}
 				try {
-					queue.put(record);
-					break;
-				} catch (InterruptedException unused) {
+					available = result.next();
+				} catch (SQLException e) {
+					close();
+					throw new ExtractorException(e);
+				}
+				fetched = true;
+				if (!available) {
+					close();
 				}
 			}
+			return available;
 		}
 
 		@Override
-		public void run() {
-			List<DataRecord> records = new ArrayList<>();
-			IQueueElement element;
+		public DataRecord next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			fetched = false;
 
-			int recordsCount = 0;
-			try (Connection connection = dataSource.getConnection()) {
-				connection.setAutoCommit(true);
+			DataRecord record = new DataRecord(schema);
+			try {
+				for (int i = 0; i < schema.size(); ++i) {
+					record.set(i, result.getObject(i + 1));
+				}
+			} catch (SQLException e) {
+				close();
+				throw new ExtractorException(e);
+			}
+			++recordsCount;
+			return record;
+		}
 
-				for (;;) {
-					try {
-						element = queue.take();
-					} catch (InterruptedException e) {
-						continue;
-					}
+		/**
+		 * Read result set rows directly into record batch vectors. Numeric JDBC types are stored into primitive vectors, see
+		 * {@link SqlDataSource#vectorType(ResultSetMetaData, int)}.
+		 */
+		@Override
+		public Iterator<RecordBatch> batches(int capacity) {
+			iterator();
+			return new Iterator<RecordBatch>() {
+				private RecordBatch.VectorType[] types;
+
+				@Override
+				public boolean hasNext() {
+					return StreamExtractor.this.hasNext();
+				}
 
-					if (element instanceof ShutdownWriterLoop) {
-						log.debug("Got shutdown request on batch loader thread.");
-						insert(connection, tableName, records);
-						break;
+				@Override
+				public RecordBatch next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
 					}
 
-					++recordsCount;
-					records.add((DataRecord) element);
-					if (records.size() == batchSize) {
-						insert(connection, tableName, records);
-						records.clear();
+					RecordBatch batch = new RecordBatch(schema, capacity);
+					int row = 0;
+					try {
+						if (types == null) {
+							ResultSetMetaData metaData = result.getMetaData();
+							types = new RecordBatch.VectorType[schema.size()];
+							for (int i = 0; i < types.length; ++i) {
+								types[i] = vectorType(metaData, i + 1);
+							}
+						}
+						for (int i = 0; i < types.length; ++i) {
+							batch.allocate(i, types[i]);
+						}
+
+						while (row < capacity && StreamExtractor.this.hasNext()) {
+							fetched = false;
+							for (int i = 0; i < types.length; ++i) {
+								switch (types[i]) {
+								case INT:
+									batch.setInt(i, row, result.getInt(i + 1));
+									break;
+
+								case LONG:
+									batch.setLong(i, row, result.getLong(i + 1));
+									break;
+
+								case DOUBLE:
+									batch.setDouble(i, row, result.getDouble(i + 1));
+									break;
+
+								default:
+									batch.objects(i)[row] = result.getObject(i + 1);
+									continue;
+								}
+								if (result.wasNull()) {
+									batch.setNull(i, row);
+								}
+							}
+							++row;
+							++recordsCount;
+						}
+					} catch (SQLException e) {
+						close();
+						throw new ExtractorException(e);
 					}
+					batch.setSize(row);
+					return batch;
 				}
+			};
+		}
 
-			} catch (Throwable e) {
+		@Override
+		public void close() {
+			if (connection == null) {
+				return;
+			}
+			try {
+				if (result != null) {
+					result.close();
+				}
+				if (statement != null) {
+					statement.close();
+				}
+				if (!connection.getAutoCommit()) {
+					connection.commit();
+				}
+				connection.close();
+			} catch (SQLException e) {
 				log.error(e);
-				exception = e;
 			}
+			log.debug("{} close stream after {} records.", name, recordsCount);
+			connection = null;
+			statement = null;
+			result = null;
+		}
+	}
+
+	/**
+	 * Extractor splitting source table into ranges of partition column values and reading all ranges concurrently, every
+	 * partition on its own thread and pooled connection. Partition column should be numeric or date, usually primary key.
+	 * Records from all partitions are merged into a bounded queue consumed by this extractor iterator; note that source order
+	 * is not preserved. First partition has no lower bound and last partition has no upper bound, so that rows with MIN and
+	 * MAX values are read even if bounds cannot be represented exactly; rows with null partition column are read by first
+	 * partition.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private class PartitionedExtractor implements IExtractor, Iterator<DataRecord> {
+		private final String tableName;
+		private final List<String> columnNames;
+		private final String whereClause;
+		private final RecordSchema schema;
+		private final String partitionColumn;
+		private final int partitionsCount;
+
+		private final BlockingQueue<IQueueElement> queue;
+		private final List<Thread> threads;
+
+		private int runningPartitions;
+		private DataRecord nextRecord;
+		private volatile boolean closed;
+
+		public PartitionedExtractor(String tableName, List<String> columnNames, String whereClause, String partitionColumn, int partitionsCount) {
+			this.tableName = tableName;
+			this.columnNames = columnNames;
+			this.whereClause = whereClause;
+			this.schema = new RecordSchema(columnNames);
+			this.partitionColumn = partitionColumn;
+			if (partitionsCount < 1) {
+				throw new EtlException("Invalid extractor partitions count %d on table %s.", partitionsCount, tableName);
+			}
+			this.partitionsCount = partitionsCount;
+
+			this.queue = new ArrayBlockingQueue<>(partitionsCount * batchSize);
+			this.threads = new ArrayList<>();
+		}
+
+		@Override
+		public Iterator<DataRecord> iterator() {
+			if (threads.isEmpty() && !closed) {
+				List<Object[]> ranges = ranges();
+				for (int i = 0; i < ranges.size(); ++i) {
+					Object[] range = ranges.get(i);
+					// first partition has no lower bound and includes null values; last partition has no upper bound
+					Object lowerBound = i > 0 ? range[0] : null;
+					Object upperBound = i < ranges.size() - 1 ? range[1] : null;
+					Thread thread = new Thread(new Partition(lowerBound, upperBound, i == 0), "Extractor Thread #" + i);
+					thread.setDaemon(true);
+					threads.add(thread);
+				}
+				runningPartitions = threads.size();
+				threads.forEach(Thread::start);
+				log.debug("{} extract table {} on {} partitions by {}.", name, tableName, threads.size(), partitionColumn);
+			}
+			return this;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (nextRecord == null && runningPartitions > 0) {
+				IQueueElement element;
+				try {
+					element = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					close();
+					throw new ExtractorException(e);
+				}
+				if (element instanceof PartitionEnd) {
+					--runningPartitions;
+					Throwable exception = ((PartitionEnd) element).exception;
+					if (exception != null) {
+						close();
+						throw new ExtractorException(exception);
+					}
+					continue;
+				}
+				nextRecord = (DataRecord) element;
+			}
+			return nextRecord != null;
+		}
+
+		@Override
+		public DataRecord next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			DataRecord record = nextRecord;
+			nextRecord = null;
+			return record;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+			runningPartitions = 0;
+			threads.forEach(Thread::interrupt);
+			queue.clear();
+		}
+
+		/**
+		 * Split partition column values range into partitions. Returned list items are pairs of lower, inclusive, and upper,
+		 * exclusive, bound. Bounds computed from MIN and MAX values may be not exact, e.g. timestamps are split with
+		 * milliseconds precision, so caller should ignore lower bound of the first range and upper bound of the last one. If
+		 * partition column has only null values returns a single range with null bounds.
+		 */
+		private List<Object[]> ranges() {
+			StringBuilder sqlBuilder = new StringBuilder();
+			sqlBuilder.append("SELECT MIN(");
+			sqlBuilder.append(partitionColumn);
+			sqlBuilder.append("),MAX(");
+			sqlBuilder.append(partitionColumn);
+			sqlBuilder.append(") FROM ");
+			sqlBuilder.append(getEscapeChar());
+			sqlBuilder.append(tableName);
+			sqlBuilder.append(getEscapeChar());
+			if (whereClause != null) {
+				sqlBuilder.append(" WHERE ");
+				sqlBuilder.append(whereClause);
+			}
+
+			Object min;
+			Object max;
+			try ( //
+					Connection connection = dataSource.getConnection(); //
+					Statement statement = connection.createStatement(); //
+					ResultSet result = statement.executeQuery(sqlBuilder.toString()); //
+			) {
+				if (!result.next()) {
+					return Collections.emptyList();
+				}
+				min = result.getObject(1);
+				max = result.getObject(2);
+			} catch (SQLException e) {
+				log.fatal("{exception}:{SQL}", e, sqlBuilder.toString());
+				throw new ExtractorException(e);
+			}
+
+			List<Object[]> ranges = new ArrayList<>();
+			if (min == null || max == null) {
+				// empty table or only null values on partition column
+				ranges.add(new Object[] { null, null });
+				return ranges;
+			}
+
+			if (min instanceof java.util.Date) {
+				BigInteger lower = BigInteger.valueOf(((java.util.Date) min).getTime());
+				BigInteger upper = BigInteger.valueOf(((java.util.Date) max).getTime());
+				return integralRanges(lower, upper, partitionsCount, value -> new Timestamp(value.longValue()));
+			}
+
+			if (min instanceof Long || min instanceof Integer || min instanceof Short || min instanceof Byte) {
+				BigInteger lower = BigInteger.valueOf(((Number) min).longValue());
+				BigInteger upper = BigInteger.valueOf(((Number) max).longValue());
+				return integralRanges(lower, upper, partitionsCount, BigInteger::longValue);
+			}
+
+			if (min instanceof BigInteger) {
+				// bounds are bound as long if they fit, so that drivers compare them with key column without conversion
+				return integralRanges((BigInteger) min, (BigInteger) max, partitionsCount, value -> value.bitLength() < 64 ? (Object) value.longValue() : value);
+			}
+
+			if (min instanceof Double || min instanceof Float) {
+				double lower = ((Number) min).doubleValue();
+				double upper = ((Number) max).doubleValue();
+				double step = (upper - lower) / partitionsCount;
+				for (int i = 0; i < partitionsCount; ++i) {
+					double next = i == partitionsCount - 1 ? upper : lower + step * (i + 1);
+					ranges.add(new Object[] { lower + step * i, next });
+					if (step == 0) {
+						break;
+					}
+				}
+				return ranges;
+			}
+
+			if (min instanceof Number) {
+				// e.g. DECIMAL keys cannot be split exactly through double values; use a single partition
+				log.warn("{} partition column {} on table {} has type {}; extract on a single partition.", name, partitionColumn, tableName, min.getClass().getSimpleName());
+				ranges.add(new Object[] { min, max });
+				return ranges;
+			}
+
+			throw new EtlException("Not numeric or date partition column %s on table %s.", partitionColumn, tableName);
+		}
+
+		/**
+		 * Partition reading rows with partition column values in range [lower bound, upper bound). A null bound means
+		 * range is not bounded on that side; partition with null values includes rows with null partition column.
+		 *
+		 * @author Iulian Rotaru
+		 */
+		private class Partition implements Runnable {
+			private final Object lowerBound;
+			private final Object upperBound;
+			private final boolean nullValues;
+
+			public Partition(Object lowerBound, Object upperBound, boolean nullValues) {
+				this.lowerBound = lowerBound;
+				this.upperBound = upperBound;
+				this.nullValues = nullValues;
+			}
+
+			@Override
+			public void run() {
+				List<String> conditions = new ArrayList<>();
+				if (whereClause != null) {
+					conditions.add('(' + whereClause + ')');
+				}
+				if (lowerBound != null) {
+					conditions.add(partitionColumn + ">=?");
+				}
+				if (upperBound != null) {
+					conditions.add(nullValues ? Strings.concat('(', partitionColumn, "<? OR ", partitionColumn, " IS NULL)") : partitionColumn + "<?");
+				}
+				StringBuilder sqlBuilder = selectClause(tableName, columnNames);
+				if (!conditions.isEmpty()) {
+					sqlBuilder.append(" WHERE ");
+					sqlBuilder.append(join(conditions, " AND "));
+				}
+				String sql = sqlBuilder.toString();
+
+				Throwable exception = null;
+				int recordsCount = 0;
+				try (Connection connection = dataSource.getConnection()) {
+					try (PreparedStatement statement = prepareStreamingStatement(connection, sql)) {
+						int index = 0;
+						if (lowerBound != null) {
+							statement.setObject(++index, lowerBound);
+						}
+						if (upperBound != null) {
+							statement.setObject(++index, upperBound);
+						}
+						try (ResultSet result = statement.executeQuery()) {
+							while (!closed && result.next()) {
+								DataRecord record = new DataRecord(schema);
+								for (int i = 0; i < schema.size(); ++i) {
+									record.set(i, result.getObject(i + 1));
+								}
+								queue.put(record);
+								++recordsCount;
+							}
+						}
+					} finally {
+						if (!connection.getAutoCommit()) {
+							connection.commit();
+						}
+					}
+				} catch (InterruptedException e) {
+					log.debug("Extractor partition [{}, {}] interrupted.", lowerBound, upperBound);
+				} catch (Throwable e) {
+					log.fatal("{exception}:{SQL}", e, sql);
+					exception = e;
+				}
+
+				log.debug("{} partition [{}, {}] extracted {} records.", name, lowerBound, upperBound, recordsCount);
+				if (!closed) {
+					try {
+						queue.put(new PartitionEnd(exception));
+					} catch (InterruptedException unused) {
+					}
+				}
+			}
+		}
+
+		private class PartitionEnd implements IQueueElement {
+			private final Throwable exception;
+
+			public PartitionEnd(Throwable exception) {
+				this.exception = exception;
+			}
+		}
+	}
+
+	private PreparedStatement prepareStreamingStatement(Connection connection, String sql) throws SQLException {
+		PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		switch (type) {
+		case POSTGRESQL:
+			connection.setAutoCommit(false);
+			statement.setFetchSize(fetchSize);
+			break;
+
+		case MYSQL:
+			statement.setFetchSize(dataSource.getJdbcUrl().contains("useCursorFetch=true") ? fetchSize : Integer.MIN_VALUE);
+			break;
+
+		case MSSQL:
+			if (!dataSource.getJdbcUrl().contains("useCursors=true") && !cursorWarningLogged) {
+				// without server cursor jTDS caches the whole result set in memory if connection is used meanwhile
+				log.warn("{} JDBC URL has no useCursors=true; jTDS streaming without server cursor has unbounded memory usage.", name);
+				cursorWarningLogged = true;
+			}
+			statement.setFetchSize(fetchSize);
+			break;
+
+		default:
+			statement.setFetchSize(fetchSize);
+			break;
+		}
+		return statement;
+	}
+
+	// --------------------------------------------------------------------------------------------
+	// ILoader implementation
+
+	@Override
+	public ILoader loader(String tableName) {
+		return new BatchLoader(tableName).start();
+	}
+
+	@Override
+	public ILoader loader(String tableName, boolean speedOptimization) {
+		if (speedOptimization) {
+			return new BatchLoader(tableName).start();
+		}
+		return new Loader(tableName);
+	}
+
+	@Override
+	public ILoader loader(String tableName, MetaProperties properties) {
+		String loaderMode = properties.get(LOADER_MODE_PROPERTY);
+		if (loaderMode == null) {
+			loaderMode = properties.get(SPEED_OPTIMIZATION_PROPERTY, boolean.class, true) ? LoaderMode.BATCH.name() : LoaderMode.SINGLE.name();
+		}
+
+		String partitionKey = properties.get(LOADER_PARTITION_KEY_PROPERTY);
+		LoaderMode mode = LoaderMode.forName(loaderMode);
+		switch (mode) {
+		case SINGLE:
+			return new Loader(tableName);
+
+		case BATCH:
+			return new BatchLoader(tableName, partitionKey).start();
+
+		case COPY:
+		case COPY_BINARY:
+			if (type != ServiceType.POSTGRESQL) {
+				throw new EtlException("Loader mode %s not supported on %s data source %s.", mode, type, name);
+			}
+			return new CopyLoader(tableName, partitionKey, mode == LoaderMode.COPY_BINARY).start();
+
+		case MULTI_ROW:
+			return new MultiRowLoader(tableName, partitionKey).start();
+
+		default:
+			throw new IllegalStateException("Not handled loader mode " + mode);
+		}
+	}
+
+	private class Loader implements ILoader {
+		protected final String tableName;
+
+		public Loader(String tableName) {
+			this.tableName = tableName;
+		}
+
+		@Override
+		public void write(DataRecord record) throws SQLException {
+			QueryMeta query = createQuery(record);
+			log.trace("{} query: {SQL}", name, query.sql);
+
+			try ( //
+					Connection connection = dataSource.getConnection(); //
+					PreparedStatement statement = connection.prepareStatement(query.sql, Statement.RETURN_GENERATED_KEYS); //
+			) {
+				connection.setAutoCommit(true);
+				for (int i = 0; i < query.columnNames.size(); ++i) {
+					statement.setObject(i + 1, query.value(record, i));
+				}
+				if (statement.executeUpdate() != 1) {
+					log.error("{} insert fails.", name);
+				}
+
+				if (query.insert) {
+					try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+						if (generatedKeys.next()) {
+							lastInsertedIds.put(tableName, generatedKeys.getLong(1));
+						} else {
+							throw new SQLException("Fail to get generated key.");
+						}
+					}
+				}
+			} catch (SQLException e) {
+				if (e.getSQLState().equals("23505")) {
+					log.debug(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+				} else {
+					log.fatal("{exception}:{SQL}", e, query.sql);
+					throw e;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+		}
+
+		protected QueryMeta createQuery(DataRecord record) {
+			String primaryKey = null;
+
+			QueryMeta query = new QueryMeta();
+			query.columnNames = new ArrayList<>();
+			List<String> wildcards = new ArrayList<>();
+
+			// optimize for insert which is by far the most used use case
+			for (String columnName : record.columnNames()) {
+				if (isPrimaryKey(tableName, columnName)) {
+					primaryKey = columnName;
+					query.insert = false;
+				} else {
+					query.columnNames.add(columnName);
+					wildcards.add("?");
+				}
+			}
+
+			if (primaryKey == null) {
+				StringBuilder sql = new StringBuilder();
+				sql.append("INSERT INTO ");
+				sql.append(getEscapeChar());
+				sql.append(tableName);
+				sql.append(getEscapeChar());
+
+				sql.append("(");
+				for (int i = 0; i < query.columnNames.size(); ++i) {
+					if (i > 0) {
+						sql.append(',');
+					}
+					sql.append(query.columnNames.get(i));
+				}
+				sql.append(") VALUES(");
+
+				for (int i = 0; i < query.columnNames.size(); ++i) {
+					if (i > 0) {
+						sql.append(',');
+					}
+					sql.append('?');
+				}
+				sql.append(')');
+
+				if (type == ServiceType.POSTGRESQL) {
+					// sql.append(" RETURNING ");
+					// sql.append(getPrimaryKey(tableName));
+				}
+				query.sql = sql.toString();
+			} else {
+				StringBuilder sql = new StringBuilder();
+				sql.append("UPDATE ");
+				sql.append(getEscapeChar());
+				sql.append(tableName);
+				sql.append(getEscapeChar());
+				sql.append(" SET ");
+
+				for (int i = 0; i < query.columnNames.size(); ++i) {
+					if (i > 0) {
+						sql.append(',');
+					}
+					sql.append(query.columnNames.get(i));
+					sql.append("=?");
+				}
+
+				sql.append(" WHERE ");
+				sql.append(primaryKey);
+				sql.append("=?");
+
+				query.sql = sql.toString();
+				query.columnNames.add(primaryKey);
+			}
+
+			query.bind(record.getSchema());
+			return query;
+		}
+
+		protected class QueryMeta {
+			String sql;
+			List<String> columnNames;
+			boolean insert = true;
+			/** Schema of the record query was created from and query columns ordinals into this schema. */
+			RecordSchema schema;
+			int[] ordinals;
+
+			/**
+			 * Resolve query columns ordinals into given record schema.
+			 */
+			void bind(RecordSchema schema) {
+				this.schema = schema;
+				this.ordinals = new int[columnNames.size()];
+				for (int i = 0; i < ordinals.length; ++i) {
+					ordinals[i] = schema.ordinal(columnNames.get(i));
+				}
+			}
+
+			/**
+			 * Get value for query parameter. Value is read by ordinal if record has the same schema as the record query was
+			 * created from, and by column name otherwise.
+			 */
+			Object value(DataRecord record, int index) {
+				if (record.getSchema() == schema && ordinals[index] != -1) {
+					return record.get(ordinals[index]);
+				}
+				return record.get(columnNames.get(index));
+			}
+		}
+	}
+
+	/**
+	 * Loader writing records in JDBC batches on background writer threads. Number of writers is configured by
+	 * <code>loaderWriters</code> data source property; every writer has its own connection and batch buffer. By default all
+	 * writers drain a shared queue; if a partition key column is configured, every writer has its own queue and records
+	 * with the same partition key value are always written by the same writer, in order.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private class BatchLoader extends Loader {
+		// 30 minutes indeed
+		private static final int DESTROY_TIMEOUT = 30 * 60 * 1000;
+		private static final int QUEUE_OFFER_TIMEOUT = 1000;
+
+		private final int recordsPerBatch;
+		/** Optional partition key column name, null if records are not partitioned to writers. */
+		private final String partitionKey;
+		private final List<LoaderQueue> queues;
+		private final List<Thread> threads;
+		/** Records dropped by all writers because of constraint violations, e.g. duplicated keys. */
+		private final AtomicLong droppedRecords = new AtomicLong();
+		private volatile Throwable exception;
+
+		public BatchLoader(String tableName) {
+			this(tableName, batchSize, null);
+		}
+
+		public BatchLoader(String tableName, String partitionKey) {
+			this(tableName, batchSize, partitionKey);
+		}
+
+		protected BatchLoader(String tableName, int recordsPerBatch, String partitionKey) {
+			super(tableName);
+			this.recordsPerBatch = recordsPerBatch;
+			this.partitionKey = partitionKey;
+
+			int writersCount = Math.max(1, loaderWriters);
+			int queuesCount = partitionKey != null ? writersCount : 1;
+			this.queues = new ArrayList<>();
+			for (int i = 0; i < queuesCount; ++i) {
+				this.queues.add(new LoaderQueue(loaderQueueSize / queuesCount, loaderQueueMemory / queuesCount));
+			}
+
+			this.threads = new ArrayList<>();
+			for (int i = 0; i < writersCount; ++i) {
+				Thread thread = new Thread(new Writer(queues.get(i % queuesCount)), writersCount == 1 ? "Loader Thread" : "Loader Thread #" + i);
+				thread.setDaemon(false);
+				this.threads.add(thread);
+			}
+		}
+
+		/**
+		 * Start loader threads. Threads are not started from constructor in order to have subclass state initialized before
+		 * threads call {@link #insert(Connection, String, List)}.
+		 * 
+		 * @return this loader instance.
+		 */
+		public BatchLoader start() {
+			threads.forEach(Thread::start);
+			return this;
+		}
+
+		@Override
+		public void write(DataRecord record) {
+			offer(queue(record), record);
+		}
+
+		/**
+		 * Queue whole record batch to be inserted by a writer with vectors bound directly to statement parameters. If records
+		 * are partitioned to writers batch is split into rows.
+		 */
+		@Override
+		public void write(RecordBatch batch) {
+			if (partitionKey != null) {
+				for (int row = 0; row < batch.size(); ++row) {
+					write(batch.record(row));
+				}
+				return;
+			}
+			if (batch.size() > 0) {
+				offer(queues.get(0), batch);
+			}
+		}
+
+		private void offer(LoaderQueue queue, IQueueElement element) {
+			for (boolean retry = false;; retry = true) {
+				// if a loader thread is aborted queue may not be drained anymore; fail fast instead of blocking forever
+				if (exception != null) {
+					throw new LoaderException(exception);
+				}
+				try {
+					if (queue.offer(element, QUEUE_OFFER_TIMEOUT, retry)) {
+						break;
+					}
+				} catch (InterruptedException unused) {
+				}
+			}
+		}
+
+		private LoaderQueue queue(DataRecord record) {
+			if (partitionKey == null) {
+				return queues.get(0);
+			}
+			int hash = Objects.hashCode(record.get(partitionKey));
+			return queues.get((hash & Integer.MAX_VALUE) % queues.size());
+		}
+
+		private class Writer implements Runnable {
+			private final LoaderQueue queue;
+
+			public Writer(LoaderQueue queue) {
+				this.queue = queue;
+			}
+
+			@Override
+			public void run() {
+				List<DataRecord> records = new ArrayList<>();
+				IQueueElement element;
+
+				int recordsCount = 0;
+				boolean transactional = commitInterval > 0;
+				try (Connection connection = dataSource.getConnection()) {
+					connection.setAutoCommit(!transactional);
+
+					int uncommittedRecords = 0;
+					try {
+						for (;;) {
+							try {
+								element = queue.take();
+							} catch (InterruptedException e) {
+								continue;
+							}
+
+							if (element instanceof ShutdownWriterLoop) {
+								log.debug("Got shutdown request on batch loader thread.");
+								insert(connection, tableName, records);
+								if (transactional) {
+									connection.commit();
+								}
+								break;
+							}
+
+							if (element instanceof RecordBatch) {
+								// keep records order: pending records are inserted before batch
+								RecordBatch batch = (RecordBatch) element;
+								insert(connection, tableName, records);
+								uncommittedRecords += records.size();
+								records.clear();
+								insert(connection, tableName, batch);
+								recordsCount += batch.size();
+								uncommittedRecords += batch.size();
+								if (transactional && uncommittedRecords >= commitInterval) {
+									connection.commit();
+									uncommittedRecords = 0;
+								}
+								continue;
+							}
+
+							++recordsCount;
+							records.add((DataRecord) element);
+							if (records.size() == recordsPerBatch) {
+								insert(connection, tableName, records);
+								uncommittedRecords += records.size();
+								records.clear();
+								if (transactional && uncommittedRecords >= commitInterval) {
+									connection.commit();
+									uncommittedRecords = 0;
+								}
+							}
+						}
+					} catch (Throwable e) {
+						if (transactional) {
+							log.error("{} rollback transaction on table {}; {} records not committed.", name, tableName, uncommittedRecords + records.size());
+							connection.rollback();
+						}
+						throw e;
+					} finally {
+						if (transactional) {
+							connection.setAutoCommit(true);
+						}
+					}
+
+				} catch (Throwable e) {
+					log.error(e);
+					exception = e;
+					log.error("Abort batch thread.");
+					return;
+				}
+
+				log.debug("Stop batch loader thread. Processed {} records.", recordsCount);
+			}
+		}
+
+		protected long insert(Connection connection, String tableName, List<DataRecord> records) throws SQLException {
+			if (records.isEmpty()) {
+				return 0L;
+			}
+			QueryMeta query = createQuery(records.get(0));
+			log.trace("{} query: {SQL}", name, query.sql);
+
+			Savepoint savepoint = savepoint(connection);
+			try (PreparedStatement statement = connection.prepareStatement(query.sql)) {
+				for (DataRecord record : records) {
+					for (int i = 0; i < query.columnNames.size(); ++i) {
+						statement.setObject(i + 1, query.value(record, i));
+					}
+					statement.addBatch();
+				}
+				executeBatch(statement, records.size());
+				release(connection, savepoint);
+				return records.size();
+
+			} catch (SQLException e) {
+				return recover(connection, savepoint, e, query.sql, query, records);
+			}
+		}
+
+		/**
+		 * Insert record batch binding column vectors directly to statement parameters, without creating row records. Loaders
+		 * with their own insert strategy should override this method; by default batch rows are inserted as JDBC batch.
+		 */
+		protected long insert(Connection connection, String tableName, RecordBatch batch) throws SQLException {
+			if (batch.size() == 0) {
+				return 0L;
+			}
+			// query is created from first row; row record has batch schema so query ordinals are batch columns
+			QueryMeta query = createQuery(batch.record(0));
+			log.trace("{} query: {SQL}", name, query.sql);
+
+			Savepoint savepoint = savepoint(connection);
+			try (PreparedStatement statement = connection.prepareStatement(query.sql)) {
+				for (int row = 0; row < batch.size(); ++row) {
+					for (int i = 0; i < query.ordinals.length; ++i) {
+						bind(statement, i + 1, batch, query.ordinals[i], row);
+					}
+					statement.addBatch();
+				}
+				executeBatch(statement, batch.size());
+				release(connection, savepoint);
+				return batch.size();
+
+			} catch (SQLException e) {
+				// row records are created only on failure, to replay the rows statement did not insert
+				return recover(connection, savepoint, e, query.sql, query, batch.records());
+			}
+		}
+
+		/**
+		 * Set a savepoint before an insert statement if connection is transactional, so that a failed statement can be undone
+		 * without rolling back the whole transaction; on PostgreSQL a failed statement aborts the transaction and every
+		 * following statement is rejected until rollback. Returns null on auto-commit, where every statement is its own
+		 * transaction.
+		 */
+		protected Savepoint savepoint(Connection connection) throws SQLException {
+			return connection.getAutoCommit() ? null : connection.setSavepoint();
+		}
+
+		protected void release(Connection connection, Savepoint savepoint) throws SQLException {
+			if (savepoint != null) {
+				connection.releaseSavepoint(savepoint);
+			}
+		}
+
+		/**
+		 * Recover from a failed insert statement. Only constraint violations, see
+		 * {@link SqlDataSource#isConstraintViolation(SQLException)}, are tolerated; any other error is rethrown. Statement
+		 * is rolled back to its savepoint, if any, and the records it did not insert are replayed one by one, so that only
+		 * records actually violating constraints are dropped.
+		 * <p>
+		 * Without savepoint, on auto-commit, rows executed before the failure are already committed; they are known from
+		 * batch update counts, if driver reports them. PostgreSQL executes a JDBC batch in a single implicit transaction and
+		 * a multi-row statement is atomic on all servers, so in these cases all records are replayed.
+		 *
+		 * @return number of records inserted by failed statement and by replay.
+		 */
+		protected long recover(Connection connection, Savepoint savepoint, SQLException e, String sql, QueryMeta query, List<DataRecord> records) throws SQLException {
+			if (!isConstraintViolation(e)) {
+				log.fatal("{exception}:{SQL}", e, sql);
+				throw e;
+			}
+
+			List<DataRecord> failedRecords = records;
+			if (savepoint != null) {
+				connection.rollback(savepoint);
+			} else if (type != ServiceType.POSTGRESQL && e instanceof BatchUpdateException) {
+				int[] rows = ((BatchUpdateException) e).getUpdateCounts();
+				failedRecords = new ArrayList<>();
+				for (int i = 0; i < records.size(); ++i) {
+					if (i >= rows.length || rows[i] == Statement.EXECUTE_FAILED) {
+						failedRecords.add(records.get(i));
+					}
+				}
+			}
+
+			log.debug("{} constraint violation on table {}; replay {} records one by one: {}", name, tableName, failedRecords.size(), message(e));
+			return records.size() - failedRecords.size() + replay(connection, query, failedRecords);
+		}
+
+		/**
+		 * Insert records one by one, every record guarded by its own savepoint, if connection is transactional. Records
+		 * violating constraints are logged and counted as dropped; they are reported when loader is closed.
+		 */
+		private long replay(Connection connection, QueryMeta query, List<DataRecord> records) throws SQLException {
+			long rowsCount = 0;
+			try (PreparedStatement statement = connection.prepareStatement(query.sql)) {
+				for (DataRecord record : records) {
+					for (int i = 0; i < query.columnNames.size(); ++i) {
+						statement.setObject(i + 1, query.value(record, i));
+					}
+					Savepoint savepoint = savepoint(connection);
+					try {
+						rowsCount += statement.executeUpdate();
+						release(connection, savepoint);
+					} catch (SQLException e) {
+						if (!isConstraintViolation(e)) {
+							log.fatal("{exception}:{SQL}", e, query.sql);
+							throw e;
+						}
+						if (savepoint != null) {
+							connection.rollback(savepoint);
+						}
+						droppedRecords.incrementAndGet();
+						log.debug("{} drop record {} on table {}: {}", name, record, tableName, message(e));
+					}
+				}
+			}
+			return rowsCount;
+		}
+
+		private void bind(PreparedStatement statement, int index, RecordBatch batch, int column, int row) throws SQLException {
+			if (column == -1 || batch.type(column) == null) {
+				statement.setObject(index, null);
+				return;
+			}
+			switch (batch.type(column)) {
+			case INT:
+				if (batch.isNull(column, row)) {
+					statement.setNull(index, Types.INTEGER);
+				} else {
+					statement.setInt(index, batch.ints(column)[row]);
+				}
+				break;
+
+			case LONG:
+				if (batch.isNull(column, row)) {
+					statement.setNull(index, Types.BIGINT);
+				} else {
+					statement.setLong(index, batch.longs(column)[row]);
+				}
+				break;
+
+			case DOUBLE:
+				if (batch.isNull(column, row)) {
+					statement.setNull(index, Types.DOUBLE);
+				} else {
+					statement.setDouble(index, batch.doubles(column)[row]);
+				}
+				break;
+
+			default:
+				statement.setObject(index, batch.objects(column)[row]);
+			}
+		}
+
+		private void executeBatch(PreparedStatement statement, int recordsCount) throws SQLException {
+			int[] rows = statement.executeBatch();
+			if (rows.length != recordsCount) {
+				throw new EtlException("Database %s batch update fail.", name);
+			}
+			for (int i = 0; i < rows.length; ++i) {
+				if (rows[i] == Statement.SUCCESS_NO_INFO) {
+					continue;
+				}
+				if (rows[i] == Statement.EXECUTE_FAILED) {
+					throw new EtlException("Database %s batch update fail: %d", name, rows[i]);
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			log.trace("close()");
+
+			// one shutdown request for every writer; if queue is shared every writer consumes only one
+			for (int i = 0; i < threads.size(); ++i) {
+				queues.get(i % queues.size()).add(new ShutdownWriterLoop());
+			}
+
+			for (Thread thread : threads) {
+				try {
+					thread.join(DESTROY_TIMEOUT);
+				} catch (InterruptedException e) {
+					log.error(e);
+				}
+			}
+			for (LoaderQueue queue : queues) {
+				log.debug("{} loader queue on table {}: peak {} records, peak {} bytes, producer blocked {} times for {} ms.", name, tableName, queue.getPeakSize(), queue.getPeakMemory(), queue.getBlockedCount(), queue.getBlockedMillis());
+			}
+			if (droppedRecords.get() > 0) {
+				log.warn("{} dropped {} records violating constraints on table {}.", name, droppedRecords.get(), tableName);
+			}
+
+			if (exception != null) {
+				throw new LoaderException(exception);
+			}
+		}
+
+		private class ShutdownWriterLoop implements IQueueElement {
+		}
+	}
+
+	/**
+	 * Loader inserting every batch of records with multi-row <code>INSERT ... VALUES (...),(...)</code> statements, so that a
+	 * batch needs a single round trip instead of relying on driver batching support. Rows per statement are capped by driver
+	 * bind parameters limit and, on MSSQL, by the 1000 rows limit of table value constructor. Updates, that is, records with
+	 * primary key, are still executed as JDBC batch.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private class MultiRowLoader extends BatchLoader {
+		public MultiRowLoader(String tableName, String partitionKey) {
+			super(tableName, partitionKey);
+		}
+
+		@Override
+		protected long insert(Connection connection, String tableName, RecordBatch batch) throws SQLException {
+			return insert(connection, tableName, new ArrayList<>(batch.records()));
+		}
+
+		@Override
+		protected long insert(Connection connection, String tableName, List<DataRecord> records) throws SQLException {
+			if (records.isEmpty()) {
+				return 0L;
+			}
+			QueryMeta query = createQuery(records.get(0));
+			if (!query.insert) {
+				return super.insert(connection, tableName, records);
+			}
+
+			int columnsCount = Math.max(1, query.columnNames.size());
+			int rowsPerStatement = Math.max(1, Math.min(maxRowsPerStatement(), maxParameters() / columnsCount));
+
+			String sql = null;
+			int sqlRowsCount = 0;
+			long rowsCount = 0;
+			for (int offset = 0; offset < records.size(); offset += rowsPerStatement) {
+				List<DataRecord> rows = records.subList(offset, Math.min(records.size(), offset + rowsPerStatement));
+				if (rows.size() != sqlRowsCount) {
+					sql = multiRowSql(query, rows.size());
+					sqlRowsCount = rows.size();
+					log.trace("{} query: {SQL}", name, sql);
+				}
+
+				// every statement has its own savepoint so that a constraint violation replays only its rows
+				Savepoint savepoint = savepoint(connection);
+				try (PreparedStatement statement = connection.prepareStatement(sql)) {
+					int index = 0;
+					for (DataRecord record : rows) {
+						for (int i = 0; i < query.columnNames.size(); ++i) {
+							statement.setObject(++index, query.value(record, i));
+						}
+					}
+					rowsCount += statement.executeUpdate();
+					release(connection, savepoint);
+				} catch (SQLException e) {
+					rowsCount += recover(connection, savepoint, e, sql, query, rows);
+				}
+			}
+			return rowsCount;
+		}
+
+		private String multiRowSql(QueryMeta query, int rowsCount) {
+			// query SQL is single row insert and ends with values tuple, e.g. INSERT INTO "table"(a,b) VALUES(?,?)
+			String tuple = query.sql.substring(query.sql.lastIndexOf("VALUES") + 6);
+			StringBuilder sql = new StringBuilder(query.sql.length() + (tuple.length() + 1) * rowsCount);
+			sql.append(query.sql);
+			for (int i = 1; i < rowsCount; ++i) {
+				sql.append(',');
+				sql.append(tuple);
+			}
+			return sql.toString();
+		}
+
+		/**
+		 * Maximum number of bound parameters per statement. SQL Server limit is 2100 but drivers may add their own internal
+		 * parameters, e.g. sp_prepexec handle, so use a safety margin below it; unknown servers use the same limit.
+		 */
+		private int maxParameters() {
+			switch (type) {
+			case SQLITE:
+				return 32766;
+			case POSTGRESQL:
+			case MYSQL:
+				return 65535;
+			case MSSQL:
+			default:
+				return 2000;
+			}
+		}
 
-			if (exception != null) {
-				log.error("Abort batch thread.");
-			} else {
-				log.debug("Stop batch loader thread. Processed {} records.", recordsCount);
-			}
+		private int maxRowsPerStatement() {
+			return type == ServiceType.MSSQL ? 1000 : Integer.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * PostgreSQL loader streaming every batch of records through COPY FROM STDIN, in text or binary format. Batch size is
+	 * configured by <code>copyBatchSize</code> data source property. If server rejects a row, the offending record is
+	 * identified from server error line number and reported with the exception; unlike batch insert, duplicated keys are
+	 * not ignored since a failing COPY discards the whole batch.
+	 * <p>
+	 * COPY can only insert; records carrying table primary key are updates and are routed to batch loader update
+	 * statement.
+	 * <p>
+	 * Text format values are written as server parses them, e.g. timestamps in ISO format and booleans as t/f, see
+	 * {@link SqlDataSource#copyText(Object)}.
+	 * <p>
+	 * Binary format has no implicit casts so values are encoded from destination column type, read from table meta data,
+	 * and not from value Java type, e.g. an integer value is written on eight bytes for int8 column and as base 10000 digits
+	 * for numeric column. Local date time values are converted to <code>timestamp with time zone</code> using system
+	 * default time zone. Column types without binary encoding, e.g. arrays or intervals, are rejected; use text format.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private class CopyLoader extends BatchLoader {
+		private final boolean binary;
+		/** Destination column types, mapped by columns list, used by binary format to encode values. */
+		private final Map<List<String>, ColumnType[]> columnTypes;
+
+		public CopyLoader(String tableName, String partitionKey, boolean binary) {
+			super(tableName, copyBatchSize, partitionKey);
+			this.binary = binary;
+			this.columnTypes = new ConcurrentHashMap<>();
 		}
 
-		private long insert(Connection connection, String tableName, List<DataRecord> records) throws SQLException {
+		@Override
+		protected long insert(Connection connection, String tableName, RecordBatch batch) throws SQLException {
+			return insert(connection, tableName, new ArrayList<>(batch.records()));
+		}
+
+		@Override
+		protected long insert(Connection connection, String tableName, List<DataRecord> records) throws SQLException {
 			if (records.isEmpty()) {
 				return 0L;
 			}
-			QueryMeta query = createQuery(records.get(0));
-			log.trace("{} query: {SQL}", name, query.sql);
+			if (records.get(0).columnNames().stream().anyMatch(columnName -> isPrimaryKey(tableName, columnName))) {
+				return super.insert(connection, tableName, records);
+			}
+			// COPY has no SQL parameters; query meta is used only to access record values by schema ordinals
+			QueryMeta columns = new QueryMeta();
+			columns.columnNames = new ArrayList<>(records.get(0).columnNames());
+			columns.bind(records.get(0).getSchema());
+
+			StringBuilder sql = new StringBuilder();
+			sql.append("COPY ");
+			sql.append(getEscapeChar());
+			sql.append(tableName);
+			sql.append(getEscapeChar());
+			sql.append(" (");
+			sql.append(join(columns.columnNames, ','));
+			sql.append(") FROM STDIN");
+			if (binary) {
+				sql.append(" (FORMAT BINARY)");
+			}
+			log.trace("{} query: {SQL}", name, sql);
 
-			try (PreparedStatement statement = connection.prepareStatement(query.sql)) {
+			ColumnType[] types = binary ? columnTypes(connection, columns.columnNames) : null;
+			CopyIn copyIn = copyManager(connection).copyIn(sql.toString());
+			try {
+				CopyBuffer buffer = new CopyBuffer();
+				if (binary) {
+					buffer.write(BINARY_COPY_HEADER);
+				}
 				for (DataRecord record : records) {
-					for (int i = 0; i < query.columnNames.size(); ++i) {
-						statement.setObject(i + 1, record.get(query.columnNames.get(i)));
+					if (binary) {
+						writeBinaryRow(buffer, record, columns, types);
+					} else {
+						writeTextRow(buffer, record, columns);
 					}
-					statement.addBatch();
+					if (buffer.size() >= COPY_BUFFER_SIZE) {
+						copyIn.writeToCopy(buffer.array(), 0, buffer.size());
+						buffer.reset();
+					}
+				}
+				if (binary) {
+					buffer.writeShort(-1);
+				}
+				copyIn.writeToCopy(buffer.array(), 0, buffer.size());
+				return copyIn.endCopy();
+			} catch (SQLException e) {
+				if (copyIn.isActive()) {
+					try {
+						copyIn.cancelCopy();
+					} catch (SQLException unused) {
+					}
+				}
+				DataRecord record = offendingRecord(e, records);
+				log.fatal("{exception}:{SQL}", e, sql);
+				if (record != null) {
+					throw new SQLException(String.format("COPY fail on record %s: %s", record, e.getMessage()), e.getSQLState(), e);
 				}
+				throw e;
+			}
+		}
 
-				int[] rows = statement.executeBatch();
-				if (rows.length != records.size()) {
-					throw new EtlException("Database %s batch update fail.", name);
+		/**
+		 * Get destination column types from an empty result set on given columns. Binary format has no implicit casts, so
+		 * values should be encoded as destination column type, e.g. a record batch stores smallint values into integer
+		 * vector but int2 column expects two bytes.
+		 */
+		private ColumnType[] columnTypes(Connection connection, List<String> columnNames) throws SQLException {
+			ColumnType[] types = columnTypes.get(columnNames);
+			if (types != null) {
+				return types;
+			}
+			StringBuilder sql = new StringBuilder();
+			sql.append("SELECT ");
+			sql.append(join(columnNames, ','));
+			sql.append(" FROM ");
+			sql.append(getEscapeChar());
+			sql.append(tableName);
+			sql.append(getEscapeChar());
+			sql.append(" WHERE 1=0");
+
+			types = new ColumnType[columnNames.size()];
+			try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql.toString())) {
+				ResultSetMetaData metaData = result.getMetaData();
+				for (int i = 0; i < types.length; ++i) {
+					types[i] = new ColumnType(metaData.getColumnType(i + 1), metaData.getColumnTypeName(i + 1));
 				}
-				for (int i = 0; i < rows.length; ++i) {
-					if (rows[i] == Statement.SUCCESS_NO_INFO) {
-						continue;
+			}
+			columnTypes.put(new ArrayList<>(columnNames), types);
+			return types;
+		}
+
+		private CopyManager copyManager(Connection connection) throws SQLException {
+			try {
+				Method getCopyAPI = PGConnection.class.getMethod("getCopyAPI");
+				if (connection instanceof C3P0ProxyConnection) {
+					return (CopyManager) ((C3P0ProxyConnection) connection).rawConnectionOperation(getCopyAPI, C3P0ProxyConnection.RAW_CONNECTION, new Object[0]);
+				}
+				return (CopyManager) getCopyAPI.invoke(connection);
+			} catch (NoSuchMethodException | IllegalAccessException | IllegalArgumentException | InvocationTargetException | ClassCastException e) {
+				throw new SQLException("Fail to get PostgreSQL COPY API from connection.", e);
+			}
+		}
+
+		/**
+		 * Get the record rejected by server, using line number from server error context, e.g.
+		 * <code>COPY mission, line 3, column name: "..."</code>. Returns null if error has no line information.
+		 */
+		private DataRecord offendingRecord(SQLException e, List<DataRecord> records) {
+			if (!(e instanceof PSQLException)) {
+				return null;
+			}
+			ServerErrorMessage message = ((PSQLException) e).getServerErrorMessage();
+			if (message == null || message.getWhere() == null) {
+				return null;
+			}
+			Matcher matcher = COPY_LINE_PATTERN.matcher(message.getWhere());
+			if (!matcher.find()) {
+				return null;
+			}
+			int index = Integer.parseInt(matcher.group(1)) - 1;
+			return index >= 0 && index < records.size() ? records.get(index) : null;
+		}
+
+		private void writeTextRow(CopyBuffer buffer, DataRecord record, QueryMeta columns) {
+			for (int i = 0; i < columns.columnNames.size(); ++i) {
+				if (i > 0) {
+					buffer.write('\t');
+				}
+				Object value = columns.value(record, i);
+				if (value == null) {
+					buffer.write('\\');
+					buffer.write('N');
+					continue;
+				}
+				if (value instanceof byte[]) {
+					buffer.write('\\');
+					buffer.write('\\');
+					buffer.write('x');
+					for (byte b : (byte[]) value) {
+						buffer.write(HEX_DIGITS[(b >> 4) & 0x0F]);
+						buffer.write(HEX_DIGITS[b & 0x0F]);
 					}
-					if (rows[i] == Statement.EXECUTE_FAILED) {
-						throw new EtlException("Database %s batch update fail: %d", name, rows[i]);
+					continue;
+				}
+
+				String text = copyText(value);
+				for (int j = 0; j < text.length(); ++j) {
+					char c = text.charAt(j);
+					switch (c) {
+					case '\\':
+						buffer.write('\\');
+						buffer.write('\\');
+						break;
+					case '\t':
+						buffer.write('\\');
+						buffer.write('t');
+						break;
+					case '\n':
+						buffer.write('\\');
+						buffer.write('n');
+						break;
+					case '\r':
+						buffer.write('\\');
+						buffer.write('r');
+						break;
+					default:
+						if (Character.isHighSurrogate(c) && j + 1 < text.length()) {
+							buffer.write(text.substring(j, j + 2).getBytes(StandardCharsets.UTF_8));
+							++j;
+							break;
+						}
+						buffer.writeChar(c);
 					}
 				}
+			}
+			buffer.write('\n');
+		}
 
-			} catch (SQLIntegrityConstraintViolationException e) {
-			} catch (SQLException e) {
-				if (e.getSQLState().equals("23505")) {
-					log.debug(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
-				} else {
-					log.fatal("{exception}:{SQL}", e, query.sql);
-					throw e;
+		private void writeBinaryRow(CopyBuffer buffer, DataRecord record, QueryMeta columns, ColumnType[] types) throws SQLException {
+			buffer.writeShort(columns.columnNames.size());
+			for (int i = 0; i < columns.columnNames.size(); ++i) {
+				Object value = columns.value(record, i);
+				if (value == null) {
+					buffer.writeInt(-1);
+					continue;
+				}
+				try {
+					writeBinaryValue(buffer, value, types[i]);
+				} catch (IllegalArgumentException | ArithmeticException | DateTimeException e) {
+					throw new SQLException(String.format("Invalid value |%s| for column %s of type %s: %s", value, columns.columnNames.get(i), types[i].name, e.getMessage()), e);
 				}
 			}
-			return 0L;
 		}
+	}
 
-		@Override
-		public void close() {
-			log.trace("close()");
+	/**
+	 * Destination column type for binary COPY: JDBC type and server type name, the latter for server types sharing the same
+	 * JDBC type, e.g. PostgreSQL driver reports both <code>timestamp</code> and <code>timestamptz</code> as
+	 * {@link Types#TIMESTAMP}, and <code>uuid</code> and <code>jsonb</code> as {@link Types#OTHER}.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	static class ColumnType {
+		final int type;
+		final String name;
+
+		ColumnType(int type, String name) {
+			this.type = type;
+			this.name = name;
+		}
+	}
 
-			try {
-				queue.put(new ShutdownWriterLoop());
-			} catch (InterruptedException e) {
-				log.error(e);
+	/**
+	 * Format value for COPY text format, not escaped. Temporal values are formatted ISO, e.g.
+	 * <code>2022-10-18T14:30:00.123</code>, since <code>java.util.Date</code> string is not parsable by server; local
+	 * date time from a date instant uses system default time zone. Booleans are written as <code>t</code> and
+	 * <code>f</code> and big decimals without exponent. Other values, including floating point numbers, are written by
+	 * their string representation, that server parses, e.g. <code>1.0E-5</code> or <code>NaN</code>.
+	 */
+	static String copyText(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value ? "t" : "f";
+		}
+		if (value instanceof Timestamp) {
+			return ((Timestamp) value).toLocalDateTime().toString();
+		}
+		if (value instanceof java.sql.Date || value instanceof java.sql.Time) {
+			return value.toString();
+		}
+		if (value instanceof java.util.Date) {
+			return LocalDateTime.ofInstant(((java.util.Date) value).toInstant(), ZoneId.systemDefault()).toString();
+		}
+		if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).toPlainString();
+		}
+		return value.toString();
+	}
+
+	/**
+	 * Write value with the binary encoding of destination column type, converting value if its Java type does not match
+	 * column type, e.g. a long value into numeric column or a timestamp into date column.
+	 * 
+	 * @throws SQLException if column type has no binary encoding or value cannot be converted to column type.
+	 * @throws IllegalArgumentException if value is not valid for column type, e.g. integral value out of range.
+	 */
+	static void writeBinaryValue(CopyBuffer buffer, Object value, ColumnType type) throws SQLException {
+		switch (type.type) {
+		case Types.SMALLINT:
+			buffer.writeInt(2);
+			buffer.writeShort((int) range(longValue(value), Short.MIN_VALUE, Short.MAX_VALUE));
+			return;
+
+		case Types.INTEGER:
+			buffer.writeInt(4);
+			buffer.writeInt((int) range(longValue(value), Integer.MIN_VALUE, Integer.MAX_VALUE));
+			return;
+
+		case Types.BIGINT:
+			if ("oid".equals(type.name)) {
+				// oid is unsigned four bytes integer
+				buffer.writeInt(4);
+				buffer.writeInt((int) range(longValue(value), 0, 0xFFFFFFFFL));
+				return;
+			}
+			buffer.writeInt(8);
+			buffer.writeLong(longValue(value));
+			return;
+
+		case Types.REAL:
+			buffer.writeInt(4);
+			buffer.writeInt(Float.floatToIntBits((float) doubleValue(value)));
+			return;
+
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			if ("money".equals(type.name)) {
+				break;
+			}
+			buffer.writeInt(8);
+			buffer.writeLong(Double.doubleToLongBits(doubleValue(value)));
+			return;
+
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+			writeBinaryNumeric(buffer, value);
+			return;
+
+		case Types.BIT:
+		case Types.BOOLEAN:
+			if (!"bool".equals(type.name) && !"boolean".equals(type.name)) {
+				break;
+			}
+			buffer.writeInt(1);
+			buffer.write(booleanValue(value) ? 1 : 0);
+			return;
+
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.LONGVARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+		case Types.LONGNVARCHAR:
+			writeBinaryText(buffer, copyText(value));
+			return;
+
+		case Types.TIMESTAMP:
+		case Types.TIMESTAMP_WITH_TIMEZONE:
+			buffer.writeInt(8);
+			if ("timestamptz".equals(type.name) || type.type == Types.TIMESTAMP_WITH_TIMEZONE) {
+				buffer.writeLong(ChronoUnit.MICROS.between(POSTGRESQL_EPOCH_INSTANT, instant(value)));
+			} else {
+				buffer.writeLong(ChronoUnit.MICROS.between(POSTGRESQL_EPOCH, localDateTime(value)));
 			}
+			return;
 
-			try {
-				thread.join(DESTROY_TIMEOUT);
-			} catch (InterruptedException e) {
-				log.error(e);
+		case Types.DATE:
+			buffer.writeInt(4);
+			buffer.writeInt((int) ChronoUnit.DAYS.between(POSTGRESQL_EPOCH.toLocalDate(), localDate(value)));
+			return;
+
+		case Types.TIME:
+			if (!"time".equals(type.name)) {
+				break;
+			}
+			buffer.writeInt(8);
+			buffer.writeLong(localTime(value).toNanoOfDay() / 1000);
+			return;
+
+		case Types.BINARY:
+		case Types.VARBINARY:
+		case Types.LONGVARBINARY:
+			if (!(value instanceof byte[])) {
+				throw new SQLException(String.format("Value type %s not supported by binary COPY on %s column.", value.getClass().getName(), type.name));
+			}
+			buffer.writeInt(((byte[]) value).length);
+			buffer.write((byte[]) value);
+			return;
+
+		case Types.OTHER:
+			if ("uuid".equals(type.name)) {
+				UUID uuid = value instanceof UUID ? (UUID) value : UUID.fromString(value.toString());
+				buffer.writeInt(16);
+				buffer.writeLong(uuid.getMostSignificantBits());
+				buffer.writeLong(uuid.getLeastSignificantBits());
+				return;
 			}
+			if ("json".equals(type.name)) {
+				writeBinaryText(buffer, value.toString());
+				return;
+			}
+			if ("jsonb".equals(type.name)) {
+				// jsonb binary format is version number followed by JSON text
+				byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+				buffer.writeInt(bytes.length + 1);
+				buffer.write(1);
+				buffer.write(bytes);
+				return;
+			}
+			break;
+		}
+		throw new SQLException(String.format("Column type %s not supported by binary COPY; use text COPY.", type.name));
+	}
 
-			if (exception != null) {
-				throw new LoaderException(exception);
+	private static void writeBinaryText(CopyBuffer buffer, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		buffer.writeInt(bytes.length);
+		buffer.write(bytes);
+	}
+
+	/**
+	 * Write numeric value with PostgreSQL numeric binary encoding: digits count, weight, sign and display scale, followed
+	 * by base 10000 digits, most significant first. Weight is the power of 10000 of the first digit; trailing zero digits
+	 * are not written.
+	 */
+	static void writeBinaryNumeric(CopyBuffer buffer, Object value) throws SQLException {
+		if (value instanceof Double && ((Double) value).isNaN() || value instanceof Float && ((Float) value).isNaN()) {
+			buffer.writeInt(8);
+			buffer.writeShort(0);
+			buffer.writeShort(0);
+			buffer.writeShort(NUMERIC_NAN);
+			buffer.writeShort(0);
+			return;
+		}
+
+		BigDecimal decimal = decimalValue(value);
+		int scale = Math.max(0, decimal.scale());
+		// align scale to base 10000 digits so that unscaled value splits into whole fractional digits
+		int fractionalDigits = (scale + 3) / 4;
+		BigInteger unscaled = decimal.abs().setScale(fractionalDigits * 4).unscaledValue();
+
+		List<Integer> digits = new ArrayList<>();
+		BigInteger base = BigInteger.valueOf(10000);
+		while (unscaled.signum() > 0) {
+			BigInteger[] quotientAndRemainder = unscaled.divideAndRemainder(base);
+			digits.add(quotientAndRemainder[1].intValue());
+			unscaled = quotientAndRemainder[0];
+		}
+		int weight = digits.size() - fractionalDigits - 1;
+		// digits are collected least significant first; trailing zeros do not change value
+		int first = 0;
+		while (first < digits.size() && digits.get(first) == 0) {
+			++first;
+		}
+
+		int digitsCount = digits.size() - first;
+		buffer.writeInt(8 + 2 * digitsCount);
+		buffer.writeShort(digitsCount);
+		buffer.writeShort(digitsCount > 0 ? weight : 0);
+		buffer.writeShort(decimal.signum() < 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE);
+		buffer.writeShort(scale);
+		for (int i = digits.size() - 1; i >= first; --i) {
+			buffer.writeShort(digits.get(i));
+		}
+	}
+
+	private static long range(long value, long min, long max) {
+		if (value < min || value > max) {
+			throw new IllegalArgumentException(String.format("Value %d out of range [%d, %d].", value, min, max));
+		}
+		return value;
+	}
+
+	private static long longValue(Object value) throws SQLException {
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		}
+		// fails if value has fractional part or is out of long range
+		return decimalValue(value).longValueExact();
+	}
+
+	private static double doubleValue(Object value) throws SQLException {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		if (value instanceof String) {
+			return Double.parseDouble(((String) value).trim());
+		}
+		throw unsupported(value);
+	}
+
+	private static BigDecimal decimalValue(Object value) throws SQLException {
+		if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		}
+		if (value instanceof BigInteger) {
+			return new BigDecimal((BigInteger) value);
+		}
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+			return BigDecimal.valueOf(((Number) value).longValue());
+		}
+		if (value instanceof Double || value instanceof Float) {
+			// fails on infinite values
+			return BigDecimal.valueOf(((Number) value).doubleValue());
+		}
+		if (value instanceof String) {
+			return new BigDecimal(((String) value).trim());
+		}
+		throw unsupported(value);
+	}
+
+	private static boolean booleanValue(Object value) throws SQLException {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		if (value instanceof Number) {
+			return ((Number) value).intValue() != 0;
+		}
+		if (value instanceof String) {
+			switch (((String) value).trim().toLowerCase()) {
+			case "t":
+			case "true":
+			case "y":
+			case "yes":
+			case "1":
+				return true;
+
+			case "f":
+			case "false":
+			case "n":
+			case "no":
+			case "0":
+				return false;
 			}
+			throw new IllegalArgumentException("Not a boolean.");
 		}
+		throw unsupported(value);
+	}
 
-		private class ShutdownWriterLoop implements IQueueElement {
+	private static LocalDateTime localDateTime(Object value) throws SQLException {
+		if (value instanceof Timestamp) {
+			return ((Timestamp) value).toLocalDateTime();
+		}
+		if (value instanceof java.sql.Date) {
+			return ((java.sql.Date) value).toLocalDate().atStartOfDay();
+		}
+		if (value instanceof java.util.Date && !(value instanceof java.sql.Time)) {
+			return LocalDateTime.ofInstant(((java.util.Date) value).toInstant(), ZoneId.systemDefault());
+		}
+		if (value instanceof LocalDateTime) {
+			return (LocalDateTime) value;
+		}
+		if (value instanceof LocalDate) {
+			return ((LocalDate) value).atStartOfDay();
+		}
+		if (value instanceof OffsetDateTime) {
+			return ((OffsetDateTime) value).atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+		}
+		if (value instanceof String) {
+			// accept both ISO and SQL timestamp format, e.g. 2022-10-18T14:30:00 and 2022-10-18 14:30:00
+			return LocalDateTime.parse(((String) value).trim().replace(' ', 'T'));
+		}
+		throw unsupported(value);
+	}
+
+	private static Instant instant(Object value) throws SQLException {
+		if (value instanceof java.util.Date && !(value instanceof java.sql.Date) && !(value instanceof java.sql.Time)) {
+			return ((java.util.Date) value).toInstant();
+		}
+		if (value instanceof OffsetDateTime) {
+			return ((OffsetDateTime) value).toInstant();
+		}
+		if (value instanceof Instant) {
+			return (Instant) value;
+		}
+		return localDateTime(value).atZone(ZoneId.systemDefault()).toInstant();
+	}
+
+	private static LocalDate localDate(Object value) throws SQLException {
+		if (value instanceof java.sql.Date) {
+			return ((java.sql.Date) value).toLocalDate();
+		}
+		if (value instanceof LocalDate) {
+			return (LocalDate) value;
+		}
+		if (value instanceof String && ((String) value).trim().length() == 10) {
+			return LocalDate.parse(((String) value).trim());
+		}
+		return localDateTime(value).toLocalDate();
+	}
+
+	private static LocalTime localTime(Object value) throws SQLException {
+		if (value instanceof java.sql.Time) {
+			return ((java.sql.Time) value).toLocalTime();
+		}
+		if (value instanceof LocalTime) {
+			return (LocalTime) value;
+		}
+		if (value instanceof String) {
+			return LocalTime.parse(((String) value).trim());
+		}
+		return localDateTime(value).toLocalTime();
+	}
+
+	private static SQLException unsupported(Object value) {
+		return new SQLException(String.format("Value type %s not supported by binary COPY.", value.getClass().getName()));
+	}
+
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+	private static final Pattern COPY_LINE_PATTERN = Pattern.compile("line (\\d+)");
+	private static final byte[] BINARY_COPY_HEADER = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0 };
+	private static final LocalDateTime POSTGRESQL_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+	private static final Instant POSTGRESQL_EPOCH_INSTANT = POSTGRESQL_EPOCH.toInstant(ZoneOffset.UTC);
+	private static final int NUMERIC_POSITIVE = 0x0000;
+	private static final int NUMERIC_NEGATIVE = 0x4000;
+	private static final int NUMERIC_NAN = 0xC000;
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Growable byte buffer with big endian primitive writers, as required by COPY binary format.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	static class CopyBuffer extends ByteArrayOutputStream {
+		public CopyBuffer() {
+			super(COPY_BUFFER_SIZE + 1024);
+		}
+
+		public byte[] array() {
+			return buf;
+		}
+
+		@Override
+		public void write(byte[] bytes) {
+			write(bytes, 0, bytes.length);
+		}
+
+		public void writeChar(char c) {
+			if (c < 0x80) {
+				write(c);
+				return;
+			}
+			write(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+		}
+
+		public void writeShort(int value) {
+			write(value >>> 8);
+			write(value);
+		}
+
+		public void writeInt(int value) {
+			write(value >>> 24);
+			write(value >>> 16);
+			write(value >>> 8);
+			write(value);
+		}
+
+		public void writeLong(long value) {
+			writeInt((int) (value >>> 32));
+			writeInt((int) value);
 		}
 	}
 
@@ -544,37 +2454,291 @@ public class SqlDataSource implements IDataSource {
 
 	@Override
 	public Object execute(String query) throws SQLException {
+		return execute(query, new Object[0]);
+	}
+
+	@Override
+	public Object execute(String query, Object... parameters) throws SQLException {
 		log.trace(query);
 		boolean update = !SELECT_QUERY.asPredicate().test(query);
 
+		// prepared statements are cached per connection by pool, see maxStatementsPerConnection
 		try ( //
 				Connection connection = SqlDataSource.this.dataSource.getConnection(); //
-				Statement statement = connection.createStatement(); //
+				PreparedStatement statement = connection.prepareStatement(query); //
 		) {
 			connection.setAutoCommit(true);
+			for (int i = 0; i < parameters.length; ++i) {
+				statement.setObject(i + 1, parameters[i]);
+			}
 
 			if (update) {
-				return statement.executeUpdate(query);
+				return statement.executeUpdate();
 			}
 
-			ResultSet result = statement.executeQuery(query); //
-			if (!result.next()) {
-				return null;
+			try (ResultSet result = statement.executeQuery()) {
+				if (!result.next()) {
+					return null;
+				}
+				return result.getObject(1);
 			}
-			return result.getObject(1);
 		} catch (SQLException e) {
 			exception(e, query);
 		}
 		return null;
 	}
 
-	private static void exception(SQLException e, String sql) throws SQLException {
-		// TODO: non portable solution
-		if (e.getSQLState().equals("23505")) {
-			log.debug(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+	/** Statement returning rows, that cannot be added to JDBC batch, e.g. <code>SELECT setval(...)</code>. */
+	private static final Pattern QUERY_STATEMENT = Pattern.compile("^(SELECT|WITH|VALUES|SHOW|EXPLAIN)\\b", Pattern.CASE_INSENSITIVE);
+	/** Statement that cannot run inside a transaction block. */
+	private static final Pattern NON_TRANSACTIONAL_STATEMENT = Pattern.compile("^(VACUUM|CREATE\\s+(UNIQUE\\s+)?INDEX\\s+CONCURRENTLY|DROP\\s+INDEX\\s+CONCURRENTLY|REINDEX\\b.*\\bCONCURRENTLY|(CREATE|DROP)\\s+(DATABASE|TABLESPACE)|ALTER\\s+SYSTEM)\\b", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	@Override
+	public int[] executeBatch(List<String> statements) throws SQLException {
+		if (statements.size() == 1 && NON_TRANSACTIONAL_STATEMENT.matcher(statements.get(0)).find()) {
+			return executeAutoCommit(statements.get(0));
+		}
+		for (String sql : statements) {
+			if (NON_TRANSACTIONAL_STATEMENT.matcher(sql).find()) {
+				throw new EtlException("Statement cannot run inside script transaction; move it to its own script: %s", sql);
+			}
+		}
+
+		int[] rows = new int[statements.size()];
+		try ( //
+				Connection connection = SqlDataSource.this.dataSource.getConnection(); //
+				Statement statement = connection.createStatement(); //
+		) {
+			connection.setAutoCommit(false);
+			try {
+				// queries are executed one by one, in script order, and batch is sent before every query
+				int batchOffset = 0;
+				for (int i = 0; i < statements.size(); ++i) {
+					String sql = statements.get(i);
+					log.trace(sql);
+					if (!QUERY_STATEMENT.matcher(sql).find()) {
+						statement.addBatch(sql);
+						continue;
+					}
+					executeBatch(statement, rows, batchOffset, i);
+					statement.execute(sql);
+					rows[i] = Statement.SUCCESS_NO_INFO;
+					batchOffset = i + 1;
+				}
+				executeBatch(statement, rows, batchOffset, statements.size());
+				connection.commit();
+				return rows;
+			} catch (SQLException e) {
+				log.error("{} rollback script transaction with {} statements.", name, statements.size());
+				try {
+					connection.rollback();
+				} catch (SQLException rollbackException) {
+					e.addSuppressed(rollbackException);
+				}
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		}
+	}
+
+	/** Execute statements added to batch, if any, and copy updated rows count to script rows, starting with given offset. */
+	private static void executeBatch(Statement statement, int[] rows, int offset, int end) throws SQLException {
+		if (offset == end) {
+			return;
+		}
+		int[] batchRows = statement.executeBatch();
+		System.arraycopy(batchRows, 0, rows, offset, Math.min(batchRows.length, end - offset));
+	}
+
+	private int[] executeAutoCommit(String sql) throws SQLException {
+		log.trace(sql);
+		try ( //
+				Connection connection = SqlDataSource.this.dataSource.getConnection(); //
+				Statement statement = connection.createStatement(); //
+		) {
+			connection.setAutoCommit(true);
+			statement.execute(sql);
+			int rows = statement.getUpdateCount();
+			return new int[] { rows >= 0 ? rows : Statement.SUCCESS_NO_INFO };
+		}
+	}
+
+	@Override
+	public Map<Object, Object> lookup(String tableName, String keyColumn, String valueColumn, Collection<?> keys) throws SQLException {
+		Map<Object, Object> values = new HashMap<>();
+		if (keys.isEmpty()) {
+			return values;
+		}
+
+		// requested keys mapped by normalized key, since database key type could differ from source value type; map is
+		// created on first result row since normalization depends on key column type
+		Map<Object, List<Object>> requestedKeys = null;
+
+		List<Object> keysList = new ArrayList<>(keys);
+		String sql = null;
+		try (Connection connection = SqlDataSource.this.dataSource.getConnection()) {
+			connection.setAutoCommit(true);
+			for (int offset = 0; offset < keysList.size(); offset += lookupBatchSize) {
+				List<Object> batchKeys = keysList.subList(offset, Math.min(offset + lookupBatchSize, keysList.size()));
+
+				StringBuilder sqlBuilder = selectClause(tableName, Arrays.asList(keyColumn, valueColumn));
+				sqlBuilder.append(" WHERE ");
+				sqlBuilder.append(keyColumn);
+				sqlBuilder.append(" IN (");
+				for (int i = 0; i < batchKeys.size(); ++i) {
+					if (i > 0) {
+						sqlBuilder.append(',');
+					}
+					sqlBuilder.append('?');
+				}
+				sqlBuilder.append(')');
+				sql = sqlBuilder.toString();
+				log.trace(sql);
+
+				try (PreparedStatement statement = connection.prepareStatement(sql)) {
+					for (int i = 0; i < batchKeys.size(); ++i) {
+						statement.setObject(i + 1, batchKeys.get(i));
+					}
+					try (ResultSet result = statement.executeQuery()) {
+						while (result.next()) {
+							Object resultKey = result.getObject(1);
+							if (resultKey == null) {
+								continue;
+							}
+							if (requestedKeys == null) {
+								requestedKeys = requestedKeys(keys, LookupIndex.isNumeric(resultKey));
+							}
+							List<Object> matchedKeys = requestedKeys.get(LookupIndex.normalizeKey(resultKey, LookupIndex.isNumeric(resultKey)));
+							if (matchedKeys != null) {
+								for (Object key : matchedKeys) {
+									values.put(key, result.getObject(2));
+								}
+							}
+						}
+					}
+				}
+			}
+		} catch (SQLException e) {
+			exception(e, sql);
+		}
+		return values;
+	}
+
+	/**
+	 * Map requested lookup keys by normalized key. More requested keys can have the same normalized key, e.g.
+	 * <code>"007"</code> and <code>7</code> for a numeric key column.
+	 */
+	private static Map<Object, List<Object>> requestedKeys(Collection<?> keys, boolean numeric) {
+		Map<Object, List<Object>> requestedKeys = new HashMap<>();
+		for (Object key : keys) {
+			Object normalizedKey = LookupIndex.normalizeKey(key, numeric);
+			if (normalizedKey != null) {
+				requestedKeys.computeIfAbsent(normalizedKey, k -> new ArrayList<>()).add(key);
+			}
+		}
+		return requestedKeys;
+	}
+
+	/**
+	 * Split integral range into partitions using exact arithmetic, so that wide ranges near long limits do not overflow.
+	 * Returned list items are pairs of lower, inclusive, and upper bound; upper bound is exclusive for all ranges but the
+	 * last, whose upper bound is range upper limit. Range bounds are converted to partition column type by given function.
+	 *
+	 * @param lower range lower limit, inclusive,
+	 * @param upper range upper limit, inclusive,
+	 * @param partitionsCount maximum number of partitions, at least one,
+	 * @param bound function converting range bounds to partition column type.
+	 * @return ranges list, at most partitions count items.
+	 */
+	static List<Object[]> integralRanges(BigInteger lower, BigInteger upper, int partitionsCount, Function<BigInteger, Object> bound) {
+		List<Object[]> ranges = new ArrayList<>();
+		BigInteger step = upper.subtract(lower).add(BigInteger.ONE).divide(BigInteger.valueOf(partitionsCount)).max(BigInteger.ONE);
+		for (BigInteger value = lower; value.compareTo(upper) <= 0; value = value.add(step)) {
+			BigInteger next = ranges.size() == partitionsCount - 1 ? upper : upper.min(value.add(step));
+			ranges.add(new Object[] { bound.apply(value), bound.apply(next) });
+			if (next.equals(upper)) {
+				break;
+			}
+		}
+		return ranges;
+	}
+
+	/**
+	 * Get record batch vector type for result set column. Integer types are stored into primitive vectors only if value
+	 * range fits, considering column signedness and precision, e.g. unsigned INTEGER is stored into long vector and unsigned
+	 * BIGINT into object vector; NUMERIC and DECIMAL use object vectors in order to preserve precision.
+	 * <p>
+	 * Integer vector is used only for columns known to be 32 bits wide. SQLite integers are always 64 bits, whatever
+	 * declared column type, and driver reports no precision, so SQLite integer columns use long vectors.
+	 * 
+	 * @param metaData result set meta data,
+	 * @param column column index, one based.
+	 * @return vector type for column.
+	 * @throws SQLException if column meta data cannot be read.
+	 */
+	private RecordBatch.VectorType vectorType(ResultSetMetaData metaData, int column) throws SQLException {
+		switch (metaData.getColumnType(column)) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+			// unsigned values still fit integer range
+			return type != ServiceType.SQLITE ? RecordBatch.VectorType.INT : RecordBatch.VectorType.LONG;
+
+		case Types.INTEGER:
+			// some drivers report integer type for wider columns, e.g. MySQL MEDIUMINT UNSIGNED or INT UNSIGNED; unknown
+			// precision, reported as zero, is not trusted to fit integer range
+			int precision = metaData.getPrecision(column);
+			boolean int32 = type != ServiceType.SQLITE && metaData.isSigned(column) && precision > 0 && precision <= 10;
+			return int32 ? RecordBatch.VectorType.INT : RecordBatch.VectorType.LONG;
+
+		case Types.BIGINT:
+			return metaData.isSigned(column) && metaData.getPrecision(column) <= 19 ? RecordBatch.VectorType.LONG : RecordBatch.VectorType.OBJECT;
+
+		case Types.REAL:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return RecordBatch.VectorType.DOUBLE;
+
+		default:
+			return RecordBatch.VectorType.OBJECT;
+		}
+	}
+
+	private void exception(SQLException e, String sql) throws SQLException {
+		if (isConstraintViolation(e)) {
+			log.debug(message(e));
 		} else {
 			log.fatal("{exception}:{SQL}", e, sql);
 			throw e;
 		}
 	}
+
+	/**
+	 * Test if exception is a constraint violation tolerated by this data source, that is, a duplicated key. There is no
+	 * portable SQL state for it so servers are recognized by vendor codes: PostgreSQL unique violation state, SQL Server
+	 * duplicated key error codes and SQLite unique constraint message. MySQL driver reports all integrity constraint
+	 * violations with a dedicated exception class. Batch exceptions are tested on their cause and next exception.
+	 */
+	private boolean isConstraintViolation(SQLException e) {
+		for (Throwable exception : Arrays.asList(e, e.getCause(), e.getNextException())) {
+			if (!(exception instanceof SQLException)) {
+				continue;
+			}
+			SQLException sqlException = (SQLException) exception;
+			if (sqlException instanceof SQLIntegrityConstraintViolationException || "23505".equals(sqlException.getSQLState())) {
+				return true;
+			}
+			if (type == ServiceType.MSSQL && (sqlException.getErrorCode() == 2627 || sqlException.getErrorCode() == 2601)) {
+				return true;
+			}
+			if (type == ServiceType.SQLITE && sqlException.getMessage() != null && sqlException.getMessage().contains("UNIQUE constraint failed")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String message(SQLException e) {
+		return e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+	}
 }
@@ -0,0 +1,162 @@
+package com.jslib.etl.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Split SQL script into statements on semicolon terminators. Terminators inside single and double quoted text, inside
+ * PostgreSQL dollar quoted text, e.g. <code>$$ ... $$</code> or <code>$body$ ... $body$</code>, and inside comments are
+ * not considered. Line and block comments are removed; empty statements are ignored. A dollar followed by a name and not
+ * closed by dollar is a variable reference and is left as it is.
+ * <p>
+ * MySQL scripts have their own lexical rules: quoted text may escape characters with backslash, e.g.
+ * <code>'it\'s'</code>, <code>#</code> starts a line comment, <code>--</code> starts a line comment only if followed by
+ * white space, identifiers may be back quoted and there is no dollar quoting.
+ *
+ * @author Iulian Rotaru
+ */
+final class SqlSplitter {
+	private SqlSplitter() {
+	}
+
+	/**
+	 * Split SQL script into statements, trimmed and without terminator.
+	 *
+	 * @param script SQL script, possible null.
+	 * @return script statements, in script order.
+	 */
+	public static List<String> split(String script) {
+		return split(script, false);
+	}
+
+	/**
+	 * Split SQL script into statements, trimmed and without terminator, using MySQL lexical rules if requested.
+	 *
+	 * @param script SQL script, possible null.
+	 * @param mysql true if script is for a MySQL data source.
+	 * @return script statements, in script order.
+	 */
+	public static List<String> split(String script, boolean mysql) {
+		List<String> statements = new ArrayList<>();
+		if (script == null) {
+			return statements;
+		}
+
+		StringBuilder statement = new StringBuilder();
+		int length = script.length();
+		int i = 0;
+		while (i < length) {
+			char c = script.charAt(i);
+
+			if (c == '\'' || c == '"' || (mysql && c == '`')) {
+				// quoted text, with quote escaped by doubling it, is copied as it is
+				int end = quoteEnd(script, i, mysql && c != '`');
+				statement.append(script, i, end);
+				i = end;
+				continue;
+			}
+
+			if (isLineComment(script, i, mysql)) {
+				int end = script.indexOf('\n', i);
+				i = end == -1 ? length : end;
+				continue;
+			}
+
+			if (c == '/' && i + 1 < length && script.charAt(i + 1) == '*') {
+				int end = script.indexOf("*/", i + 2);
+				i = end == -1 ? length : end + 2;
+				// keep tokens around removed comment separated
+				statement.append(' ');
+				continue;
+			}
+
+			if (c == '$' && !mysql) {
+				String tag = dollarTag(script, i);
+				if (tag != null) {
+					int end = script.indexOf(tag, i + tag.length());
+					end = end == -1 ? length : end + tag.length();
+					statement.append(script, i, end);
+					i = end;
+					continue;
+				}
+			}
+
+			if (c == ';') {
+				add(statements, statement);
+				statement.setLength(0);
+				++i;
+				continue;
+			}
+
+			statement.append(c);
+			++i;
+		}
+		add(statements, statement);
+		return statements;
+	}
+
+	/**
+	 * Test if a line comment starts at given position. MySQL line comment starts with hash or with double dash followed by
+	 * white space.
+	 */
+	private static boolean isLineComment(String script, int start, boolean mysql) {
+		if (mysql && script.charAt(start) == '#') {
+			return true;
+		}
+		if (!script.startsWith("--", start)) {
+			return false;
+		}
+		return !mysql || start + 2 == script.length() || Character.isWhitespace(script.charAt(start + 2));
+	}
+
+	/**
+	 * Get the position after the closing quote of the quoted text starting at given position, or script length if quoted
+	 * text is not closed. Quote is escaped by doubling it and, if requested, any character is escaped by backslash.
+	 */
+	private static int quoteEnd(String script, int start, boolean backslashEscapes) {
+		char quote = script.charAt(start);
+		int length = script.length();
+		int i = start + 1;
+		while (i < length) {
+			char c = script.charAt(i);
+			if (backslashEscapes && c == '\\') {
+				i += 2;
+				continue;
+			}
+			if (c == quote) {
+				if (i + 1 < length && script.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			++i;
+		}
+		return length;
+	}
+
+	/**
+	 * Get dollar quote tag starting at given position, including both dollars, or null if there is no dollar quote tag.
+	 */
+	private static String dollarTag(String script, int start) {
+		int i = start + 1;
+		while (i < script.length() && (Character.isLetterOrDigit(script.charAt(i)) || script.charAt(i) == '_')) {
+			++i;
+		}
+		if (i < script.length() && script.charAt(i) == '$') {
+			// tag should not start with a digit, in which case it is a positional parameter
+			if (i > start + 1 && Character.isDigit(script.charAt(start + 1))) {
+				return null;
+			}
+			return script.substring(start, i + 1);
+		}
+		return null;
+	}
+
+	private static void add(List<String> statements, StringBuilder statement) {
+		String sql = statement.toString().trim();
+		if (!sql.isEmpty()) {
+			statements.add(sql);
+		}
+	}
+}
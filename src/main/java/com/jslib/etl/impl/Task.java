@@ -1,7 +1,14 @@
 package com.jslib.etl.impl;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import com.jslib.api.log.Log;
 import com.jslib.api.log.LogFactory;
@@ -14,20 +21,89 @@ import com.jslib.etl.ILoader;
 import com.jslib.etl.IProject;
 import com.jslib.etl.ITask;
 import com.jslib.etl.ITransformer;
+import com.jslib.etl.RecordBatch;
+import com.jslib.etl.RecordSchema;
 import com.jslib.etl.meta.TaskMeta;
 import com.jslib.etl.meta.TransferRule;
 
 class Task implements ITask {
 	private static final Log log = LogFactory.getLog(Task.class);
 
+	private static final String BATCH_PROCESSING_PROPERTY = "batchProcessing";
+	private static final String TRANSFORM_WORKERS_PROPERTY = "transformWorkers";
+	private static final String PIPELINE_CHUNK_SIZE_PROPERTY = "pipelineChunkSize";
+	private static final String KEEP_ORDER_PROPERTY = "keepOrder";
+	private static final String LOOKUP_MEMORY_BUDGET_PROPERTY = "lookupMemoryBudget";
+	private static final String FUNCTIONS_CACHE_SIZE_PROPERTY = "functionsCacheSize";
+	private static final int FUNCTIONS_CACHE_SIZE = 10000;
+	private static final int PIPELINE_CHUNK_SIZE = 256;
+
 	private final IProject project;
 	private final TaskMeta taskMeta;
-	private final Transformers transformers;
+	/** Transfer rules in the order from task meta. */
+	private final TransferRule[] transferRules;
+	/** Transformers factory, owning in memory lookup indexes and pure functions results cache used by transformers. */
+	private final Transformers transformersFactory;
+	/** Transformers aligned with transfer rules, created once when task is created. */
+	private final ITransformer[] transformers;
+	/** Schema shared by all destination records, with destination columns in transfer rules order. */
+	private final RecordSchema destinationSchema;
+	/** Destination columns ordinals, aligned with transfer rules. */
+	private final int[][] destinationOrdinals;
+	/** Flags for rules with single column source and destination, processed without data value wrappers. */
+	private final boolean[] scalarRules;
+	/** Flags for scalar rules without transformer function, with source value copied as it is. */
+	private final boolean[] identityRules;
+	/** Flags for rules with variable source. */
+	private final boolean[] variableRules;
+	/** True if a transfer rule uses last inserted ID, in which case a record is transformed only after previous one is loaded. */
+	private final boolean usesLastInsertedId;
 
 	public Task(IProject project, Functions functions, TaskMeta taskMeta) {
 		this.project = project;
 		this.taskMeta = taskMeta;
-		this.transformers = new Transformers(functions);
+
+		List<TransferRule> rules = new ArrayList<>();
+		taskMeta.getTransferMeta().forEach(rules::add);
+		this.transferRules = rules.toArray(new TransferRule[0]);
+
+		// by default an in memory lookup index can use up to a quarter of maximum heap
+		long lookupMemoryBudget = taskMeta.getProperties().get(LOOKUP_MEMORY_BUDGET_PROPERTY, long.class, Runtime.getRuntime().maxMemory() / 4);
+		int functionsCacheSize = taskMeta.getProperties().get(FUNCTIONS_CACHE_SIZE_PROPERTY, int.class, FUNCTIONS_CACHE_SIZE);
+		this.transformersFactory = new Transformers(functions, lookupMemoryBudget, functionsCacheSize);
+		this.transformers = new ITransformer[transferRules.length];
+		boolean usesLastInsertedId = false;
+		for (int i = 0; i < transferRules.length; ++i) {
+			transformers[i] = transformersFactory.getTransformers(transferRules[i]);
+			String transformerName = transferRules[i].getTransformerName();
+			// compiled chains are cached by functions so transformer already compiled this expression
+			usesLastInsertedId |= !transformerName.isEmpty() && functions.compile(transformerName).usesLastInsertedId();
+		}
+		this.usesLastInsertedId = usesLastInsertedId;
+
+		Set<String> destinationColumns = new LinkedHashSet<>();
+		for (TransferRule transferRule : transferRules) {
+			IDataReference reference = transferRule.getDestinationReference();
+			if (reference.isArray()) {
+				for (String columnName : reference.columnNames()) {
+					destinationColumns.add(columnName);
+				}
+			} else {
+				destinationColumns.add(reference.columnName());
+			}
+		}
+		this.destinationSchema = new RecordSchema(destinationColumns);
+		this.destinationOrdinals = ordinals(destinationSchema, TransferRule::getDestinationReference);
+
+		this.scalarRules = new boolean[transferRules.length];
+		this.identityRules = new boolean[transferRules.length];
+		this.variableRules = new boolean[transferRules.length];
+		for (int i = 0; i < transferRules.length; ++i) {
+			TransferRule transferRule = transferRules[i];
+			scalarRules[i] = !transferRule.getSourceReference().isArray() && !transferRule.getDestinationReference().isArray();
+			identityRules[i] = scalarRules[i] && transferRule.getTransformerName().isEmpty();
+			variableRules[i] = transferRule.getSourceReference().isVariable();
+		}
 	}
 
 	@Override
@@ -40,49 +116,66 @@ class Task implements ITask {
 		project.onPreExecuteTask(taskMeta.getName());
 
 		long startTimeMillis = System.currentTimeMillis();
-		boolean speedOptimization = taskMeta.getProperties().get("speedOptimization", boolean.class, true);
 		String extractorFilter = project.injectVariables(taskMeta.getProperties().get("extractorFilter"));
+		// records per batch for columnar processing; zero for records processed one by one
+		int batchCapacity = taskMeta.getProperties().get(BATCH_PROCESSING_PROPERTY, int.class, 0);
+		// transform workers for pipelined execution; zero for all stages executed on task thread
+		int transformWorkers = taskMeta.getProperties().get(TRANSFORM_WORKERS_PROPERTY, int.class, 0);
+		if (usesLastInsertedId && (batchCapacity > 0 || transformWorkers > 0)) {
+			// both batch processing and transform workers transform records ahead of loader
+			log.warn("Task '{task_name}' uses last inserted ID; batch processing and transform workers are disabled.", taskMeta.getName());
+			batchCapacity = 0;
+			transformWorkers = 0;
+		}
 
-		// if task extracts data ONLY from variables extractor data source is not configured
-		IExtractor extractor = null;
-		if (taskMeta.getExtractorDataSourceName() != null) {
-			IDataSource sourceDataSource = project.getDataSource(taskMeta.getExtractorDataSourceName());
-			if (extractorFilter != null) {
-				extractor = sourceDataSource.extractor(taskMeta.getExtractorTableName(), taskMeta.getExtractorColumnNames(), extractorFilter);
-			} else {
-				extractor = sourceDataSource.extractor(taskMeta.getExtractorTableName(), taskMeta.getExtractorColumnNames());
+		// variables are not changed while task is running; resolve variable sourced values once per task run
+		// variable values array is aligned with transfer rules and has null items for rules with column sources
+		Object[] variableValues = new Object[transferRules.length];
+		for (int i = 0; i < transferRules.length; ++i) {
+			if (variableRules[i]) {
+				// is not allowed to mix variables with column names
+				variableValues[i] = project.getVariableValue(transferRules[i].getSourceReference().columnName());
 			}
-		} else {
-			extractor = new VariablesExtractor();
 		}
 
+		// source columns ordinals are resolved from the schema of the first extracted record and reused while extractor
+		// returns records with the same schema
+		RecordSchema sourceSchema = null;
+		int[][] sourceOrdinals = null;
+
 		final AtomicInteger records = new AtomicInteger();
 		IDataSource destinationDataSource = project.getDataSource(taskMeta.getLoaderDataSourceName());
-		try (ILoader loader = destinationDataSource.loader(taskMeta.getLoaderTableName(), speedOptimization)) {
-			for(DataRecord sourceRecord: extractor) {
-				records.incrementAndGet();
-				DataRecord destinationRecord = new DataRecord();
-				for (TransferRule transferRule : taskMeta.getTransferMeta()) {
-					IDataReference sourceReference = transferRule.getSourceReference();
-					IDataValue sourceValue;
-					if (sourceReference.isVariable()) {
-						// is not allowed to mix variables with column names
-						sourceValue = DataRecord.value(project.getVariableValue(sourceReference.columnName()));
-					} else {
-						assert sourceRecord != null;
-						sourceValue = sourceRecord.get(transferRule.getSourceReference());
+		try (IExtractor extractor = createExtractor(extractorFilter); ILoader loader = destinationDataSource.loader(taskMeta.getLoaderTableName(), taskMeta.getProperties())) {
+			// batch processing requires source records; task with only variables sources has no extractor data source
+			if (batchCapacity > 0 && taskMeta.getExtractorDataSourceName() != null) {
+				Iterator<RecordBatch> batches = extractor.batches(batchCapacity);
+				while (batches.hasNext()) {
+					RecordBatch sourceBatch = batches.next();
+					records.addAndGet(sourceBatch.size());
+					if (sourceBatch.getSchema() != sourceSchema) {
+						sourceSchema = sourceBatch.getSchema();
+						sourceOrdinals = ordinals(sourceSchema, TransferRule::getSourceReference);
 					}
-
-					ITransformer transformer = transformers.getTransformers(transferRule);
-					IDataValue destinationValue = transformer.transform(sourceValue);
-
-					destinationRecord.put(transferRule.getDestinationReference(), destinationValue);
+					loader.write(transfer(sourceBatch, sourceOrdinals, variableValues));
 				}
-				loader.write(destinationRecord);
-			};
+			} else if (transformWorkers > 0) {
+				records.addAndGet(executePipeline(extractor, loader, transformWorkers, variableValues));
+			} else {
+				for (DataRecord sourceRecord : extractor) {
+					records.incrementAndGet();
+					if (sourceRecord != null && sourceRecord.getSchema() != sourceSchema) {
+						sourceSchema = sourceRecord.getSchema();
+						// records with open schema have their own schema instance and are accessed by column names
+						sourceOrdinals = sourceSchema.isSealed() ? ordinals(sourceSchema, TransferRule::getSourceReference) : null;
+					}
+					loader.write(transfer(sourceRecord, sourceOrdinals, variableValues));
+				}
+			}
 		} catch (Throwable e) {
 			log.error("Task '{task_name}' error: {exception}", taskMeta.getName(), e);
 			return false;
+		} finally {
+			transformersFactory.release(taskMeta.getName());
 		}
 
 		log.info("Task '{task_name}' processed {} records in {processing_time} seconds.", taskMeta.getName(), records.get(), (System.currentTimeMillis() - startTimeMillis) / 1000.0);
@@ -90,6 +183,145 @@ class Task implements ITask {
 		return true;
 	}
 
+	/**
+	 * Execute task as pipeline with extractor, transform workers and loader stages, see {@link Pipeline}. Source order is
+	 * preserved only if <code>keepOrder</code> task property is true. Tasks with transfer rules using last inserted ID are
+	 * not pipelined since transform workers run ahead of loader, no matter records order.
+	 */
+	private int executePipeline(IExtractor extractor, ILoader loader, int transformWorkers, Object[] variableValues) throws Exception {
+		int chunkSize = taskMeta.getProperties().get(PIPELINE_CHUNK_SIZE_PROPERTY, int.class, PIPELINE_CHUNK_SIZE);
+		boolean keepOrder = taskMeta.getProperties().get(KEEP_ORDER_PROPERTY, boolean.class, false);
+
+		// transform workers resolve source ordinals concurrently; records with open schema are accessed by column names
+		Map<RecordSchema, int[][]> sourceOrdinals = new ConcurrentHashMap<>();
+		Function<DataRecord, DataRecord> transfer = sourceRecord -> {
+			int[][] ordinals = null;
+			if (sourceRecord != null && sourceRecord.getSchema().isSealed()) {
+				ordinals = sourceOrdinals.computeIfAbsent(sourceRecord.getSchema(), schema -> ordinals(schema, TransferRule::getSourceReference));
+			}
+			return transfer(sourceRecord, ordinals, variableValues);
+		};
+		return new Pipeline(taskMeta.getName(), transformWorkers, chunkSize, keepOrder).execute(extractor, transfer, loader);
+	}
+
+	/**
+	 * Apply transfer rules on source record and return destination record. Source ordinals are null if source record should
+	 * be accessed by column names.
+	 */
+	private DataRecord transfer(DataRecord sourceRecord, int[][] sourceOrdinals, Object[] variableValues) {
+		DataRecord destinationRecord = new DataRecord(destinationSchema);
+		for (int i = 0; i < transferRules.length; ++i) {
+			if (scalarRules[i]) {
+				// single column rules copy values directly, without data value wrappers
+				Object sourceValue;
+				if (variableRules[i]) {
+					sourceValue = variableValues[i];
+				} else if (sourceOrdinals != null) {
+					int ordinal = sourceOrdinals[i][0];
+					sourceValue = ordinal != -1 ? sourceRecord.get(ordinal) : null;
+				} else {
+					assert sourceRecord != null;
+					sourceValue = sourceRecord.get(transferRules[i].getSourceReference().columnName());
+				}
+				destinationRecord.set(destinationOrdinals[i][0], identityRules[i] ? sourceValue : transformers[i].apply(sourceValue));
+				continue;
+			}
+
+			// multiple columns references use data value array
+			IDataValue sourceValue;
+			if (variableRules[i]) {
+				sourceValue = DataRecord.value(variableValues[i]);
+			} else {
+				assert sourceRecord != null;
+				IDataReference sourceReference = transferRules[i].getSourceReference();
+				sourceValue = sourceOrdinals != null ? sourceRecord.get(sourceReference, sourceOrdinals[i]) : sourceRecord.get(sourceReference);
+			}
+			destinationRecord.put(transferRules[i].getDestinationReference(), destinationOrdinals[i], transformers[i].transform(sourceValue));
+		}
+		return destinationRecord;
+	}
+
+	/**
+	 * Apply transfer rules on source record batch and return destination batch. Single column rules transform whole column
+	 * vectors, see {@link ITransformer#transform(RecordBatch, int, RecordBatch, int)}; rules with variable source and rules
+	 * with multiple columns references are processed row by row.
+	 */
+	private RecordBatch transfer(RecordBatch source, int[][] sourceOrdinals, Object[] variableValues) {
+		RecordBatch destination = new RecordBatch(destinationSchema, source.capacity());
+		destination.setSize(source.size());
+
+		for (int i = 0; i < transferRules.length; ++i) {
+			int[] columns = destinationOrdinals[i];
+			if (scalarRules[i] && !variableRules[i] && sourceOrdinals[i][0] != -1) {
+				transformers[i].transform(source, sourceOrdinals[i][0], destination, columns[0]);
+				continue;
+			}
+
+			for (int column : columns) {
+				destination.allocate(column, RecordBatch.VectorType.OBJECT);
+			}
+			IDataReference sourceReference = transferRules[i].getSourceReference();
+			for (int row = 0; row < source.size(); ++row) {
+				if (scalarRules[i]) {
+					Object sourceValue = variableRules[i] ? variableValues[i] : null;
+					destination.set(columns[0], row, identityRules[i] ? sourceValue : transformers[i].apply(sourceValue));
+					continue;
+				}
+
+				IDataValue sourceValue;
+				if (variableRules[i]) {
+					sourceValue = DataRecord.value(variableValues[i]);
+				} else if (sourceReference.isArray()) {
+					Object[] values = new Object[sourceOrdinals[i].length];
+					for (int j = 0; j < values.length; ++j) {
+						values[j] = sourceOrdinals[i][j] != -1 ? source.get(sourceOrdinals[i][j], row) : null;
+					}
+					sourceValue = DataRecord.value(values);
+				} else {
+					sourceValue = DataRecord.value(sourceOrdinals[i][0] != -1 ? source.get(sourceOrdinals[i][0], row) : null);
+				}
+
+				IDataValue destinationValue = transformers[i].transform(sourceValue);
+				if (!transferRules[i].getDestinationReference().isArray()) {
+					destination.set(columns[0], row, DataRecord.object(destinationValue));
+					continue;
+				}
+				Object[] values = DataRecord.array(destinationValue);
+				if (values.length != columns.length) {
+					throw new IllegalStateException("Data reference not consistent with data value.");
+				}
+				for (int j = 0; j < columns.length; ++j) {
+					destination.set(columns[j], row, values[j]);
+				}
+			}
+		}
+		return destination;
+	}
+
+	/**
+	 * Resolve columns ordinals into given schema for the data references selected from transfer rules. Returned array is
+	 * aligned with transfer rules.
+	 */
+	private int[][] ordinals(RecordSchema schema, Function<TransferRule, IDataReference> referenceSelector) {
+		int[][] ordinals = new int[transferRules.length][];
+		for (int i = 0; i < transferRules.length; ++i) {
+			ordinals[i] = schema.ordinals(referenceSelector.apply(transferRules[i]));
+		}
+		return ordinals;
+	}
+
+	private IExtractor createExtractor(String extractorFilter) {
+		// if task extracts data ONLY from variables extractor data source is not configured
+		if (taskMeta.getExtractorDataSourceName() == null) {
+			return new VariablesExtractor();
+		}
+		IDataSource sourceDataSource = project.getDataSource(taskMeta.getExtractorDataSourceName());
+		if (extractorFilter != null) {
+			return sourceDataSource.extractor(taskMeta.getExtractorTableName(), taskMeta.getExtractorColumnNames(), taskMeta.getProperties(), extractorFilter);
+		}
+		return sourceDataSource.extractor(taskMeta.getExtractorTableName(), taskMeta.getExtractorColumnNames(), taskMeta.getProperties());
+	}
+
 	/**
 	 * Special case extractor used only when ETL task reads all values from variables and, therefore, has no data source
 	 * configured. In this care extractor returns a single null data record. Null record is acceptable because task processing
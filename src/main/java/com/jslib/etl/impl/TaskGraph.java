@@ -0,0 +1,318 @@
+package com.jslib.etl.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
+import com.jslib.etl.EtlException;
+import com.jslib.etl.ITask;
+import com.jslib.etl.meta.TaskMeta;
+import com.jslib.etl.meta.TransferRule;
+
+/**
+ * Tasks dependency graph used to execute independent tasks concurrently. A task depends on a task declared before it, in
+ * ETL file, if they access the same table and at least one of them writes it, or if it uses a variable evaluated by the
+ * other task. Accessed tables are extractor and loader tables, tables referenced by transformer expressions, e.g. last
+ * inserted ID from data source table, and tables referenced by task variables and scripts; tables referenced by scripts
+ * are considered written. A task can also declare explicit dependencies using <code>dependsOn</code> section property,
+ * with a comma separated list of task names.
+ * <p>
+ * Global variables are evaluated lazily, by the first task using them, and their value is captured at that moment and
+ * shared by all tasks. For this reason a task using a global variable accesses, transitively, tables and variables
+ * referenced by variable expression. This way a global variable is evaluated after all tasks declared before its first
+ * user and writing tables it reads completed, and before tasks declared after and writing those tables start, as on
+ * sequential execution.
+ * <p>
+ * Task is started only after all its dependencies completed successfully, with tasks started in ETL file order. If a task
+ * fails no more tasks are started but already running tasks are allowed to complete.
+ *
+ * @author Iulian Rotaru
+ */
+class TaskGraph {
+	private static final Log log = LogFactory.getLog(TaskGraph.class);
+
+	private static final String DEPENDS_ON_PROPERTY = "dependsOn";
+
+	/** Qualified table name, that is, data source and table name separated by dot. */
+	private static final Pattern TABLE_PATTERN = Pattern.compile("\\b(\\w+)\\.(\\w+)\\b");
+	private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$(\\w+)");
+
+	private final List<ITask> tasks;
+	/** For every task, indices of the tasks it depends on. */
+	private final List<Set<Integer>> dependencies;
+
+	public TaskGraph(List<TaskMeta> tasksMeta, List<ITask> tasks, Collection<Variable> variables, Collection<Script> scripts) {
+		this.tasks = tasks;
+		this.dependencies = new ArrayList<>();
+
+		Map<String, Variable> globalVariables = new HashMap<>();
+		for (Variable variable : variables) {
+			if (variable.isGlobal()) {
+				globalVariables.put(variable.getName(), variable);
+			}
+		}
+
+		List<Node> nodes = new ArrayList<>();
+		for (TaskMeta taskMeta : tasksMeta) {
+			nodes.add(new Node(taskMeta, variables, globalVariables, scripts));
+		}
+
+		for (int i = 0; i < nodes.size(); ++i) {
+			Node node = nodes.get(i);
+			Set<Integer> taskDependencies = new HashSet<>();
+			for (int j = 0; j < i; ++j) {
+				if (node.dependsOn(nodes.get(j))) {
+					taskDependencies.add(j);
+				}
+			}
+			for (String taskName : node.explicitDependencies) {
+				int index = indexOf(nodes, taskName);
+				if (index == -1) {
+					throw new EtlException("Task |%s| depends on not existing task |%s|.", node.name, taskName);
+				}
+				taskDependencies.add(index);
+			}
+			taskDependencies.remove(i);
+			log.debug("Task '{task_name}' depends on tasks {}.", node.name, taskDependencies);
+			dependencies.add(taskDependencies);
+		}
+	}
+
+	/**
+	 * Execute tasks, running independent tasks concurrently, with at most given number of tasks running at a time.
+	 *
+	 * @param maxParallelTasks maximum number of concurrent tasks.
+	 * @return true if all tasks completed successfully.
+	 * @throws EtlException if tasks dependencies are circular.
+	 * @throws InterruptedException if current thread is interrupted while waiting for tasks.
+	 */
+	public boolean execute(int maxParallelTasks) throws InterruptedException {
+		AtomicInteger threadIndex = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(maxParallelTasks, runnable -> new Thread(runnable, "Task Thread #" + threadIndex.getAndIncrement()));
+		CompletionService<Boolean> completion = new ExecutorCompletionService<>(executor);
+		// map future to index of the task it executes
+		Map<Future<Boolean>, Integer> futures = new IdentityHashMap<>();
+
+		boolean[] started = new boolean[tasks.size()];
+		boolean[] completed = new boolean[tasks.size()];
+		int completedCount = 0;
+		int runningCount = 0;
+		Throwable failure = null;
+		boolean failed = false;
+
+		try {
+			for (;;) {
+				for (int i = 0; !failed && i < tasks.size() && runningCount < maxParallelTasks; ++i) {
+					if (!started[i] && isReady(i, completed)) {
+						ITask task = tasks.get(i);
+						log.debug("Start task '{task_name}'.", task.getName());
+						futures.put(completion.submit(task::execute), i);
+						started[i] = true;
+						++runningCount;
+					}
+				}
+				if (runningCount == 0) {
+					break;
+				}
+
+				Future<Boolean> future = completion.take();
+				--runningCount;
+				int index = futures.remove(future);
+				try {
+					if (future.get()) {
+						completed[index] = true;
+						++completedCount;
+					} else {
+						failed = true;
+					}
+				} catch (ExecutionException e) {
+					failed = true;
+					if (failure == null) {
+						failure = e.getCause();
+					}
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure != null) {
+			throw new EtlException(failure);
+		}
+		if (failed) {
+			return false;
+		}
+		if (completedCount != tasks.size()) {
+			throw new EtlException("Circular dependencies between tasks.");
+		}
+		return true;
+	}
+
+	private boolean isReady(int taskIndex, boolean[] completed) {
+		for (int dependency : dependencies.get(taskIndex)) {
+			if (!completed[dependency]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int indexOf(List<Node> nodes, String taskName) {
+		for (int i = 0; i < nodes.size(); ++i) {
+			if (nodes.get(i).name.equals(taskName)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void addTables(Set<String> tables, String text) {
+		if (text == null) {
+			return;
+		}
+		Matcher matcher = TABLE_PATTERN.matcher(text);
+		while (matcher.find()) {
+			tables.add(table(matcher.group(1), matcher.group(2)));
+		}
+	}
+
+	private static void addVariables(Set<String> variables, String text) {
+		if (text == null) {
+			return;
+		}
+		Matcher matcher = VARIABLE_PATTERN.matcher(text);
+		while (matcher.find()) {
+			variables.add(matcher.group(1));
+		}
+	}
+
+	private static String table(String dataSourceName, String tableName) {
+		return dataSourceName != null && tableName != null ? (dataSourceName + '.' + tableName).toLowerCase() : null;
+	}
+
+	private static boolean intersects(Set<String> set1, Set<String> set2) {
+		for (String item : set1) {
+			if (set2.contains(item)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tables and variables accessed by a task.
+	 *
+	 * @author Iulian Rotaru
+	 */
+	private static class Node {
+		final String name;
+		final Set<String> readTables = new HashSet<>();
+		final Set<String> writeTables = new HashSet<>();
+		/** Names of the variables evaluated by task, that is, pre and post task variables. */
+		final Set<String> definedVariables = new HashSet<>();
+		/**
+		 * Names of the variables used by task transfer rules, extractor filter, variables and scripts, including variables
+		 * referenced by used global variables.
+		 */
+		final Set<String> usedVariables = new HashSet<>();
+		final List<String> explicitDependencies = new ArrayList<>();
+
+		Node(TaskMeta taskMeta, Collection<Variable> variables, Map<String, Variable> globalVariables, Collection<Script> scripts) {
+			this.name = taskMeta.getName();
+
+			String extractorTable = table(taskMeta.getExtractorDataSourceName(), taskMeta.getExtractorTableName());
+			if (extractorTable != null) {
+				readTables.add(extractorTable);
+			}
+			String loaderTable = table(taskMeta.getLoaderDataSourceName(), taskMeta.getLoaderTableName());
+			if (loaderTable != null) {
+				writeTables.add(loaderTable);
+			}
+
+			String extractorFilter = taskMeta.getProperties().get("extractorFilter");
+			addVariables(usedVariables, extractorFilter);
+			for (TransferRule rule : taskMeta.getTransferMeta()) {
+				if (rule.getSourceReference().isVariable()) {
+					addVariables(usedVariables, rule.getSourceReference().columnName());
+				}
+				addTables(readTables, rule.getTransformerName());
+				addVariables(usedVariables, rule.getTransformerName());
+			}
+
+			for (Variable variable : variables) {
+				if (name.equals(variable.getTaskName())) {
+					definedVariables.add(variable.getName());
+					addTables(readTables, variable.getExpression());
+					addVariables(usedVariables, variable.getExpression());
+				}
+			}
+			for (Script script : scripts) {
+				if (name.equals(script.getTaskName())) {
+					addTables(writeTables, script.getCode());
+					addVariables(usedVariables, script.getCode());
+				}
+			}
+			addGlobalVariables(globalVariables);
+
+			String dependsOn = taskMeta.getProperties().get(DEPENDS_ON_PROPERTY);
+			if (dependsOn != null) {
+				for (String taskName : dependsOn.split(",")) {
+					if (!taskName.trim().isEmpty()) {
+						explicitDependencies.add(taskName.trim());
+					}
+				}
+			}
+		}
+
+		/**
+		 * Add tables and variables referenced by global variables used by this task, following references between global
+		 * variables. Global variable tables are considered read.
+		 */
+		private void addGlobalVariables(Map<String, Variable> globalVariables) {
+			List<String> pendingVariables = new ArrayList<>(usedVariables);
+			for (int i = 0; i < pendingVariables.size(); ++i) {
+				Variable variable = globalVariables.get(pendingVariables.get(i));
+				if (variable == null) {
+					continue;
+				}
+				addTables(readTables, variable.getExpression());
+				Set<String> referencedVariables = new HashSet<>();
+				addVariables(referencedVariables, variable.getExpression());
+				for (String referencedVariable : referencedVariables) {
+					if (usedVariables.add(referencedVariable)) {
+						pendingVariables.add(referencedVariable);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Test if this task depends on other task declared before it.
+		 */
+		boolean dependsOn(Node other) {
+			if (intersects(other.writeTables, writeTables) || intersects(other.writeTables, readTables) || intersects(other.readTables, writeTables)) {
+				return true;
+			}
+			return intersects(other.definedVariables, usedVariables) || intersects(definedVariables, other.usedVariables);
+		}
+	}
+}
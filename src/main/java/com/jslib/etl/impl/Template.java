@@ -0,0 +1,121 @@
+package com.jslib.etl.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.jslib.converter.Converter;
+
+/**
+ * Text with variable references, compiled once into literal and variable segments. Rendered text is kept and reused
+ * while referenced variables values are not changed, that is, the same value instances; this way templates evaluated
+ * repeatedly, e.g. extractor filter of a task executed from a loop, are rendered only when a variable changes.
+ * <p>
+ * A variable reference is a dollar followed by variable name. Reference to a not defined variable is rendered as it is.
+ * Template is thread safe; last rendering is published as immutable snapshot.
+ *
+ * @author Iulian Rotaru
+ */
+class Template {
+	private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$(\\w+)");
+
+	/** Literal segments, one more than variable segments; a literal is empty if variables are adjacent. */
+	private final String[] literals;
+	/** Names of referenced variables, in text order. */
+	private final String[] names;
+
+	private volatile Rendering rendering;
+
+	public Template(String text) {
+		List<String> literals = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+
+		Matcher matcher = VARIABLE_PATTERN.matcher(text);
+		int position = 0;
+		while (matcher.find()) {
+			literals.add(text.substring(position, matcher.start()));
+			names.add(matcher.group(1));
+			position = matcher.end();
+		}
+		literals.add(text.substring(position));
+
+		this.literals = literals.toArray(new String[0]);
+		this.names = names.toArray(new String[0]);
+	}
+
+	/**
+	 * Get the names of the variables referenced by this template, in text order, possible with duplicates.
+	 *
+	 * @return referenced variables names.
+	 */
+	public List<String> getVariableNames() {
+		return Arrays.asList(names);
+	}
+
+	/**
+	 * Render template with current variables values, reusing last rendered text if no referenced variable changed.
+	 *
+	 * @param variables project variables resolver, returning null for not defined variable,
+	 * @param converter converter used to format variables values.
+	 * @return rendered text.
+	 */
+	public String render(Function<String, Variable> variables, Converter converter) {
+		if (names.length == 0) {
+			return literals[0];
+		}
+
+		Object[] values = new Object[names.length];
+		for (int i = 0; i < names.length; ++i) {
+			Variable variable = variables.apply(names[i]);
+			values[i] = variable != null ? variable.getValue() : UNDEFINED;
+		}
+
+		Rendering rendering = this.rendering;
+		if (rendering != null && rendering.matches(values)) {
+			return rendering.text;
+		}
+
+		StringBuilder builder = new StringBuilder(literals[0]);
+		for (int i = 0; i < names.length; ++i) {
+			if (values[i] == UNDEFINED) {
+				builder.append('$').append(names[i]);
+			} else {
+				builder.append(converter.asString(values[i]));
+			}
+			builder.append(literals[i + 1]);
+		}
+		rendering = new Rendering(values, builder.toString());
+		this.rendering = rendering;
+		return rendering.text;
+	}
+
+	/** Marker for not defined variable. */
+	private static final Object UNDEFINED = new Object();
+
+	/**
+	 * Rendered text and the variables values it was rendered from.
+	 *
+	 * @author Iulian Rotaru
+	 */
+	private static class Rendering {
+		final Object[] values;
+		final String text;
+
+		Rendering(Object[] values, String text) {
+			this.values = values;
+			this.text = text;
+		}
+
+		boolean matches(Object[] values) {
+			for (int i = 0; i < values.length; ++i) {
+				if (this.values[i] != values[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
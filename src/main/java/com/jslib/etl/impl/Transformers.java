@@ -1,38 +1,195 @@
 package com.jslib.etl.impl;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.jslib.api.log.Log;
+import com.jslib.api.log.LogFactory;
 import com.jslib.etl.DataRecord;
 import com.jslib.etl.EtlException;
 import com.jslib.etl.IDataReference;
 import com.jslib.etl.IDataValue;
 import com.jslib.etl.ITransformer;
+import com.jslib.etl.RecordBatch;
 import com.jslib.etl.meta.TransferRule;
 import com.jslib.util.Types;
 
 public class Transformers {
+	private static final Log log = LogFactory.getLog(Transformers.class);
+
+	/** Marker for cached null results. */
+	private static final Object NULL = new Object();
+
 	private final Functions functions;
+	/** Maximum estimated size, in bytes, for every in memory lookup index. */
+	private final long lookupMemoryBudget;
+	/** In memory lookup indexes mapped by lookup function arguments, loaded on first use and shared by transformers. */
+	private final Map<String, LookupIndex> lookupIndexes;
+	/** Results of pure function chains, shared by all transformers, or null if results cache is disabled. */
+	private final ResultsCache resultsCache;
+	/** Transformers using results cache, kept for cache statistics. */
+	private final List<Proxy> cachedTransformers;
 
-	public Transformers(Functions functions) {
+	/**
+	 * Create transformers factory for a task.
+	 * 
+	 * @param functions built in functions,
+	 * @param lookupMemoryBudget maximum estimated size, in bytes, for every in memory lookup index,
+	 * @param cacheSize maximum number of pure function results cached for task, zero to disable results cache.
+	 */
+	public Transformers(Functions functions, long lookupMemoryBudget, int cacheSize) {
 		this.functions = functions;
+		this.lookupMemoryBudget = lookupMemoryBudget;
+		this.lookupIndexes = new ConcurrentHashMap<>();
+		this.resultsCache = cacheSize > 0 ? new ResultsCache(cacheSize) : null;
+		this.cachedTransformers = new ArrayList<>();
 	}
 
+	/**
+	 * Create transformer for given transfer rule, with rule functions expression compiled. Caller should create transformer
+	 * once per rule and reuse it for all processed records.
+	 * 
+	 * @param rule transfer rule.
+	 * @return transformer for rule.
+	 */
 	public ITransformer getTransformers(TransferRule rule) {
 		if (rule.getTransformerName().isEmpty()) {
-			return this::identity;
+			return IDENTITY;
+		}
+		Proxy proxy = new Proxy(rule);
+		if (proxy.cached) {
+			cachedTransformers.add(proxy);
+		}
+		return proxy;
+	}
+
+	/**
+	 * Log in memory lookup indexes and results cache statistics and release them. Indexes are loaded again and cache is
+	 * empty on next task run; this way memory is released when task ends and lookup data is refreshed on every run.
+	 * 
+	 * @param taskName name of the task owning transformers.
+	 */
+	public void release(String taskName) {
+		lookupIndexes.values().forEach(index -> index.report(taskName));
+		lookupIndexes.clear();
+
+		if (resultsCache != null) {
+			for (Proxy proxy : cachedTransformers) {
+				long hits = proxy.cacheHits.sumThenReset();
+				long misses = proxy.cacheMisses.sumThenReset();
+				long requests = hits + misses;
+				log.info("Task '{task_name}' function |{}| cache: {} hits, {} misses, {}% hit ratio.", taskName, proxy.chain, hits, misses, requests > 0 ? 100 * hits / requests : 0);
+			}
+			resultsCache.clear();
 		}
-		return new Proxy(rule);
 	}
 
 	private class Proxy implements ITransformer {
 		private final TransferRule rule;
+		private final Functions.Chain chain;
+		/** Chain results are cached if chain is pure and results cache is enabled. */
+		private final boolean cached;
+		private final LongAdder cacheHits;
+		private final LongAdder cacheMisses;
 
 		public Proxy(TransferRule rule) {
 			this.rule = rule;
+			this.chain = functions.compile(rule.getTransformerName());
+			this.cached = resultsCache != null && chain.isPure();
+			this.cacheHits = new LongAdder();
+			this.cacheMisses = new LongAdder();
 		}
 
 		@Override
 		public IDataValue transform(IDataValue sourceValue) {
-			Object destinationValue = functions.invoke(rule.getTransformerName(), sourceValue.value());
+			return DataRecord.value(apply(sourceValue.value()));
+		}
+
+		@Override
+		public void transform(RecordBatch source, int sourceColumn, RecordBatch destination, int destinationColumn) {
+			if (chain.isLookup()) {
+				lookup(source, sourceColumn, destination, destinationColumn);
+				return;
+			}
+			if (!chain.isDoubleOperator() || source.type(sourceColumn) != RecordBatch.VectorType.DOUBLE) {
+				ITransformer.super.transform(source, sourceColumn, destination, destinationColumn);
+				return;
+			}
+
+			// numeric operator on double vector is invoked without boxing
+			destination.allocate(destinationColumn, RecordBatch.VectorType.DOUBLE);
+			double[] sourceValues = source.doubles(sourceColumn);
+			for (int row = 0; row < source.size(); ++row) {
+				if (source.isNull(sourceColumn, row)) {
+					// let function decide about null value, as on rows processing
+					destination.set(destinationColumn, row, apply(null));
+					continue;
+				}
+				destination.setDouble(destinationColumn, row, chain.invokeDouble(sourceValues[row]));
+			}
+		}
+
+		/**
+		 * Collect distinct keys from source column and retrieve lookup values for the whole batch with a single query per
+		 * data source lookup batch, then scatter values back to destination rows.
+		 */
+		private void lookup(RecordBatch source, int sourceColumn, RecordBatch destination, int destinationColumn) {
+			Set<Object> keys = new LinkedHashSet<>();
+			for (int row = 0; row < source.size(); ++row) {
+				Object key = source.get(sourceColumn, row);
+				if (key != null) {
+					keys.add(key);
+				}
+			}
+			Map<Object, Object> values = chain.lookup(keys);
 
+			destination.allocate(destinationColumn, RecordBatch.VectorType.OBJECT);
+			for (int row = 0; row < source.size(); ++row) {
+				Object key = source.get(sourceColumn, row);
+				destination.set(destinationColumn, row, check(key != null ? values.get(key) : null));
+			}
+		}
+
+		@Override
+		public Object apply(Object sourceValue) {
+			if (chain.isIndexLookup()) {
+				return check(lookupIndexes.computeIfAbsent(chain.getLookupIndexName(), name -> chain.createLookupIndex(lookupMemoryBudget)).get(sourceValue));
+			}
+			if (cached && !Types.isArray(sourceValue)) {
+				return check(invokeCached(sourceValue));
+			}
+			return check(chain.invoke(sourceValue));
+		}
+
+		/**
+		 * Invoke chain through results cache. Mutable results, e.g. timestamps, are copied both when stored into and when
+		 * retrieved from cache so that a caller altering its result does not alter cached value.
+		 */
+		private Object invokeCached(Object sourceValue) {
+			CacheKey key = new CacheKey(chain, sourceValue);
+			Object value = resultsCache.get(key);
+			if (value != null) {
+				cacheHits.increment();
+				return value != NULL ? copy(value) : null;
+			}
+
+			// chain is invoked outside cache lock; concurrent misses for the same key compute the same value
+			cacheMisses.increment();
+			value = chain.invoke(sourceValue);
+			// stored key argument is copied too since a mutable argument changed by caller would break cache lookup
+			resultsCache.put(new CacheKey(chain, copy(sourceValue)), value != null ? copy(value) : NULL);
+			return value;
+		}
+
+		private Object check(Object destinationValue) {
 			IDataReference destinationReference = rule.getDestinationReference();
 			if (destinationReference.isArray()) {
 				if (!Types.isArray(destinationValue)) {
@@ -44,11 +201,145 @@ public class Transformers {
 					throw new EtlException("Invalid response type. Expected object but got array.");
 				}
 			}
-			return DataRecord.value(destinationValue);
+			return destinationValue;
+		}
+	}
+
+	/**
+	 * Results cache key: function chain and chain argument.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private static final class CacheKey {
+		private final Functions.Chain chain;
+		private final Object argument;
+		private final int hashCode;
+
+		CacheKey(Functions.Chain chain, Object argument) {
+			this.chain = chain;
+			this.argument = argument;
+			this.hashCode = 31 * System.identityHashCode(chain) + Objects.hashCode(argument);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) obj;
+			return chain == other.chain && Objects.equals(argument, other.argument);
 		}
 	}
 
-	private IDataValue identity(IDataValue value) {
+	/**
+	 * Copy mutable function argument or result. Dates and byte arrays are the only mutable values handled by built in
+	 * functions.
+	 * 
+	 * @param value function argument or result, possible null.
+	 * @return value copy if mutable, value itself otherwise.
+	 */
+	private static Object copy(Object value) {
+		if (value instanceof Date) {
+			// clone preserves runtime type and timestamp nanoseconds
+			return ((Date) value).clone();
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).clone();
+		}
 		return value;
 	}
+
+	/**
+	 * Thread safe results cache with bounded size. Cache is split into stripes selected by key hash, every stripe being a
+	 * least recently used map with its own lock, so that concurrent transform workers do not contend on a single lock.
+	 * Eviction is per stripe, so that least recently used order is approximated.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private static class ResultsCache {
+		private static final int STRIPES_COUNT = 16;
+
+		private final Stripe[] stripes;
+
+		ResultsCache(int maxSize) {
+			this.stripes = new Stripe[STRIPES_COUNT];
+			int stripeSize = Math.max(1, maxSize / STRIPES_COUNT);
+			for (int i = 0; i < STRIPES_COUNT; ++i) {
+				this.stripes[i] = new Stripe(stripeSize);
+			}
+		}
+
+		Object get(CacheKey key) {
+			Stripe stripe = stripe(key);
+			synchronized (stripe) {
+				return stripe.get(key);
+			}
+		}
+
+		void put(CacheKey key, Object value) {
+			Stripe stripe = stripe(key);
+			synchronized (stripe) {
+				stripe.put(key, value);
+			}
+		}
+
+		void clear() {
+			for (Stripe stripe : stripes) {
+				synchronized (stripe) {
+					stripe.clear();
+				}
+			}
+		}
+
+		private Stripe stripe(CacheKey key) {
+			int hash = key.hashCode();
+			return stripes[(hash ^ (hash >>> 16)) & (STRIPES_COUNT - 1)];
+		}
+	}
+
+	/**
+	 * Least recently used map with bounded size. Not thread safe; callers synchronize on stripe instance.
+	 * 
+	 * @author Iulian Rotaru
+	 */
+	private static class Stripe extends LinkedHashMap<CacheKey, Object> {
+		private static final long serialVersionUID = -3721984365107654823L;
+
+		private final int maxSize;
+
+		Stripe(int maxSize) {
+			super(16, 0.75F, true);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<CacheKey, Object> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	private static final ITransformer IDENTITY = new ITransformer() {
+		@Override
+		public IDataValue transform(IDataValue value) {
+			return value;
+		}
+
+		@Override
+		public Object apply(Object value) {
+			return value;
+		}
+
+		@Override
+		public void transform(RecordBatch source, int sourceColumn, RecordBatch destination, int destinationColumn) {
+			destination.share(destinationColumn, source, sourceColumn);
+		}
+	};
 }
\ No newline at end of file
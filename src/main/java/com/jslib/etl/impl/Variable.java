@@ -9,7 +9,8 @@ public class Variable {
 	/** Optional name of the task owner. Null if this variable is global. */
 	private final String taskName;
 
-	private Object value;
+	/** Variable value, possible updated by task thread and read by other tasks threads. */
+	private volatile Object value;
 
 	public Variable(String name, String expression, Type type, String taskName) {
 		this.name = name;
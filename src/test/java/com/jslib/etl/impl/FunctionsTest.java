@@ -0,0 +1,223 @@
+package com.jslib.etl.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Method;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.etl.IDataSource;
+import com.jslib.etl.IProject;
+
+/**
+ * Functions tests on compiled chains. Chain results are checked against functions invoked by reflection, as functions
+ * were dispatched before chains compilation.
+ *
+ * @author Iulian Rotaru
+ */
+public class FunctionsTest {
+	private IProject project;
+	private IDataSource dataSource;
+	private Functions functions;
+
+	@Before
+	public void beforeTest() {
+		project = mock(IProject.class);
+		dataSource = mock(IDataSource.class);
+		when(project.getDataSource(anyString())).thenReturn(dataSource);
+		functions = new Functions(project);
+	}
+
+	@Test
+	public void GivenStringChain_WhenInvoke_ThenSameAsReflective() throws Exception {
+		// given
+		Functions.Chain chain = functions.compile("translate to English and upper case");
+
+		for (String value : new String[] { "subterana", "Subterana", "Iulian Rotaru", "" }) {
+			// when
+			Object result = chain.invoke(value);
+
+			// then
+			assertThat(result, equalTo(reflective("upperCase", reflective("translateToEnglish", value))));
+		}
+	}
+
+	@Test
+	public void GivenNumericChain_WhenInvoke_ThenSameAsReflective() throws Exception {
+		// given
+		Functions.Chain chain = functions.compile("kph to mps");
+
+		for (double value : new double[] { 0.0, 36.0, -12.5, 123456.789 }) {
+			// when
+			Object result = chain.invoke(value);
+
+			// then
+			assertThat(result, equalTo(reflective("kphToMps", value)));
+			assertThat(chain.invokeDouble(value), equalTo(reflective("kphToMps", value)));
+			assertThat(chain.invokeDouble((Object) value), equalTo(reflective("kphToMps", value)));
+		}
+	}
+
+	@Test
+	public void GivenStringArgumentForNumericChain_WhenInvoke_ThenConvertedAsReflective() throws Exception {
+		// when
+		Object result = functions.compile("kph to mps").invoke("36");
+
+		// then
+		assertThat(result, equalTo(reflective("kphToMps", 36.0)));
+	}
+
+	@Test
+	public void GivenIntegralChain_WhenInvoke_ThenSameAsReflective() throws Exception {
+		// given
+		Functions.Chain chain = functions.compile("integer");
+
+		// when
+		Object result = chain.invoke("42");
+
+		// then
+		assertThat(result, equalTo(reflective("integer", "42")));
+		assertThat(chain.invokeLong("42"), equalTo(42L));
+	}
+
+	@Test
+	public void GivenChainWithExtraArguments_WhenInvoke_ThenSameAsReflective() throws Exception {
+		// when
+		Object result = functions.compile("timestamp by yyyy-MM-dd HH:mm:ss").invoke("2022-10-18 14:30:15");
+
+		// then
+		assertThat(result, equalTo(reflective("timestamp", "2022-10-18 14:30:15", "yyyy-MM-dd HH:mm:ss")));
+	}
+
+	@Test
+	public void GivenNullArgument_WhenInvoke_ThenNullResult() {
+		// then
+		assertThat(functions.compile("translate to English and upper case").invoke(null), nullValue());
+		assertThat(functions.compile("person name").invoke(null), nullValue());
+		assertThat(functions.compile("kph to mps").invoke(null), nullValue());
+		assertThat(functions.compile("integer").invoke(null), nullValue());
+		assertThat(functions.compile("timestamp by yyyy-MM-dd HH:mm:ss").invoke(null), nullValue());
+	}
+
+	@Test
+	public void GivenLookupKeyNotFound_WhenInvoke_ThenNullResult() throws Exception {
+		// given
+		when(dataSource.lookup(anyString(), anyString(), anyString(), any())).thenReturn(Collections.emptyMap());
+
+		// when
+		Object result = functions.compile("sql lookup by ngs.operator, id, name").invoke(7);
+
+		// then
+		assertThat(result, nullValue());
+	}
+
+	@Test
+	public void GivenPureFunctions_WhenCompile_ThenChainIsPure() {
+		// then
+		assertThat(functions.compile("upper case").isPure(), equalTo(true));
+		assertThat(functions.compile("translate to English and upper case").isPure(), equalTo(true));
+		assertThat(functions.compile("timestamp by yyyy-MM-dd HH:mm:ss").isPure(), equalTo(true));
+	}
+
+	@Test
+	public void GivenNotPureFunction_WhenCompile_ThenChainIsNotPure() {
+		// then
+		assertThat(functions.compile("sql lookup by ngs.operator, id, name").isPure(), equalTo(false));
+	}
+
+	@Test
+	public void GivenLastInsertedIdExpression_WhenCompile_ThenUsesLastInsertedId() {
+		// when
+		Functions.Chain chain = functions.compile("last inserted ID from commons.mission");
+
+		// then
+		assertThat(chain.usesLastInsertedId(), equalTo(true));
+		assertThat(chain.isPure(), equalTo(false));
+	}
+
+	@Test
+	public void GivenChainWithoutLastInsertedId_WhenCompile_ThenNotUsesLastInsertedId() {
+		// when
+		Functions.Chain chain = functions.compile("translate to English and upper case");
+
+		// then
+		assertThat(chain.usesLastInsertedId(), equalTo(false));
+	}
+
+	@Test
+	public void GivenTimestampValues_WhenParse_ThenSameAsSimpleDateFormat() throws Exception {
+		// given
+		String[][] cases = new String[][] { //
+				{ "yyyy-MM-dd'T'HH:mm:ss", "2022-10-18T14:30:15" }, //
+				{ "yyyy-MM-dd HH:mm:ss", "2022-10-18 14:30:15" }, //
+				{ "yyyy-MM-dd HH:mm:ss.SSS", "2022-10-18 14:30:15.123" }, //
+				{ "yyyy-MM-dd'T'HH:mm:ss.SSS", "2022-10-18T14:30:15.007" }, //
+				{ "yyyy-MM-dd", "2022-10-18" }, //
+				{ "dd/MM/yyyy HH:mm", "18/10/2022 14:30" }, //
+				{ "yyyy-MM-dd HH:mm:ss", "2022-1-5 3:4:5" }, //
+				{ "yyyy-MM-dd", "2021-02-30" }, //
+				{ "yyyy-MM-dd HH:mm:ss", "2021-12-31 23:59:60" }, //
+				{ "yyyy-MM-dd HH:mm:ss", "2021-13-01 10:00:00" }, //
+				{ "yyyy-MM-dd HH:mm:ss", "2022-10-18 14:30:15 EEST" }, //
+				{ "yyyy-MM-dd", "2022-10-18T14:30:15" }, //
+				{ "yyyyMMddHHmmss", "20221018143015" } //
+		};
+
+		for (String[] c : cases) {
+			// when
+			Object timestamp = reflective("timestamp", c[1], c[0]);
+
+			// then
+			assertThat(c[0] + " | " + c[1], timestamp, equalTo(legacyTimestamp(c[0], c[1], Locale.getDefault(Locale.Category.FORMAT))));
+		}
+	}
+
+	@Test
+	public void GivenLocalizedTimestampValues_WhenParse_ThenSameAsSimpleDateFormat() throws Exception {
+		// given
+		String[][] cases = new String[][] { //
+				{ "dd MMM yyyy HH:mm", "18 Oct 2022 14:30", "en" }, //
+				{ "dd MMM yyyy HH:mm", "18 OCT 2022 14:30", "en" }, //
+				{ "dd MMMM yyyy hh:mm a", "18 October 2022 02:30 PM", "en" }, //
+				{ "EEE, dd MMM yyyy HH:mm:ss", "Tue, 18 Oct 2022 14:30:15", "en" } //
+		};
+
+		for (String[] c : cases) {
+			// when
+			Object timestamp = reflective("timestamp", c[1], c[0], c[2]);
+
+			// then
+			assertThat(c[0] + " | " + c[1], timestamp, equalTo(legacyTimestamp(c[0], c[1], Locale.forLanguageTag(c[2]))));
+		}
+	}
+
+	/** Timestamp parsed as before timestamp parser, with lenient simple date format on the same time zone. */
+	private static Timestamp legacyTimestamp(String pattern, String value, Locale locale) throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat(pattern, locale);
+		format.setTimeZone(TimeZone.getTimeZone("EEST"));
+		return new Timestamp(format.parse(value).getTime());
+	}
+
+	/** Invoke function by reflection, selecting overloaded functions by arguments count. */
+	private Object reflective(String functionName, Object... arguments) throws Exception {
+		for (Method method : Functions.class.getDeclaredMethods()) {
+			if (method.getName().equals(functionName) && method.getParameterCount() == arguments.length) {
+				method.setAccessible(true);
+				return method.invoke(functions, arguments);
+			}
+		}
+		throw new NoSuchMethodException(functionName);
+	}
+}
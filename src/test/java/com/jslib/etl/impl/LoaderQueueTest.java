@@ -0,0 +1,149 @@
+package com.jslib.etl.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.jslib.etl.DataRecord;
+import com.jslib.etl.IQueueElement;
+import com.jslib.etl.RecordBatch;
+import com.jslib.etl.RecordSchema;
+
+/**
+ * Loader queue bounds tests. Records have a single string column so that a record with one character value is estimated
+ * to 81 bytes: 32 for record, 8 for value reference and 41 for string.
+ *
+ * @author Iulian Rotaru
+ */
+public class LoaderQueueTest {
+	private static final RecordSchema SCHEMA = new RecordSchema(Arrays.asList("name"));
+	private static final long RECORD_SIZE = 81;
+
+	@Test
+	public void GivenQueueAtCapacity_WhenOffer_ThenTimeout() throws InterruptedException {
+		// given
+		LoaderQueue queue = new LoaderQueue(2, 0);
+		assertThat(queue.offer(record("a"), 0, false), equalTo(true));
+		assertThat(queue.offer(record("b"), 0, false), equalTo(true));
+
+		// when
+		boolean offered = queue.offer(record("c"), 10, false);
+
+		// then
+		assertThat(offered, equalTo(false));
+		assertThat(queue.getPeakSize(), equalTo(2));
+		assertThat(queue.getBlockedCount(), equalTo(1));
+	}
+
+	@Test
+	public void GivenRecordBatch_WhenOffer_ThenCountsAllRecords() throws InterruptedException {
+		// given
+		LoaderQueue queue = new LoaderQueue(4, 0);
+		RecordBatch batch = new RecordBatch(SCHEMA, 3);
+		batch.setSize(3);
+		assertThat(queue.offer(batch, 0, false), equalTo(true));
+		assertThat(queue.offer(record("a"), 0, false), equalTo(true));
+
+		// when
+		boolean offered = queue.offer(record("b"), 0, false);
+
+		// then
+		assertThat(offered, equalTo(false));
+		assertThat(queue.getPeakSize(), equalTo(4));
+	}
+
+	@Test
+	public void GivenQueueAboveMemoryBudget_WhenOffer_ThenTimeout() throws InterruptedException {
+		// given
+		LoaderQueue queue = new LoaderQueue(0, 2 * RECORD_SIZE);
+		assertThat(queue.offer(record("a"), 0, false), equalTo(true));
+		assertThat(queue.offer(record("b"), 0, false), equalTo(true));
+
+		// when
+		boolean offered = queue.offer(record("c"), 0, false);
+
+		// then
+		assertThat(offered, equalTo(false));
+		assertThat(queue.getPeakMemory(), equalTo(2 * RECORD_SIZE));
+	}
+
+	@Test
+	public void GivenElementLargerThanMemoryBudget_WhenOfferOnEmptyQueue_ThenAccepted() throws InterruptedException {
+		// given
+		LoaderQueue queue = new LoaderQueue(0, RECORD_SIZE / 2);
+
+		// when
+		boolean offered = queue.offer(record("a"), 0, false);
+
+		// then
+		assertThat(offered, equalTo(true));
+		assertThat(queue.offer(record("b"), 0, false), equalTo(false));
+	}
+
+	@Test
+	public void GivenBlockedProducer_WhenTake_ThenProducerReleased() throws Exception {
+		// given
+		LoaderQueue queue = new LoaderQueue(0, RECORD_SIZE);
+		DataRecord first = record("a");
+		DataRecord second = record("b");
+		queue.offer(first, 0, false);
+		CompletableFuture<Boolean> producer = CompletableFuture.supplyAsync(() -> {
+			try {
+				return queue.offer(second, 10000, false);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		});
+
+		// when
+		IQueueElement taken = queue.take();
+
+		// then
+		assertThat(taken, equalTo(first));
+		assertThat(producer.get(10, TimeUnit.SECONDS), equalTo(true));
+		assertThat(queue.take(), equalTo(second));
+	}
+
+	@Test
+	public void GivenRetriedOffer_WhenTimeoutAgain_ThenBlockedCountedOnce() throws InterruptedException {
+		// given
+		LoaderQueue queue = new LoaderQueue(1, 0);
+		queue.offer(record("a"), 0, false);
+		DataRecord record = record("b");
+
+		// when
+		queue.offer(record, 0, false);
+		queue.offer(record, 0, true);
+		queue.offer(record, 0, true);
+
+		// then
+		assertThat(queue.getBlockedCount(), equalTo(1));
+	}
+
+	@Test
+	public void GivenFullQueue_WhenAdd_ThenAddedIgnoringBounds() throws InterruptedException {
+		// given
+		LoaderQueue queue = new LoaderQueue(1, RECORD_SIZE);
+		DataRecord record = record("a");
+		queue.offer(record, 0, false);
+		RecordBatch shutdown = new RecordBatch(SCHEMA, 0);
+
+		// when
+		queue.add(shutdown);
+
+		// then
+		assertThat(queue.take(), equalTo(record));
+		assertThat(queue.take(), equalTo(shutdown));
+	}
+
+	private static DataRecord record(String name) {
+		DataRecord record = new DataRecord(SCHEMA);
+		record.set(0, name);
+		return record;
+	}
+}
@@ -0,0 +1,184 @@
+package com.jslib.etl.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.etl.EtlException;
+import com.jslib.etl.meta.ServiceMeta;
+import com.jslib.etl.meta.ServiceType;
+
+/**
+ * Lookup index tests against a SQLite database file, created for every test.
+ *
+ * @author Iulian Rotaru
+ */
+public class LookupIndexTest {
+	private File databaseFile;
+	private SqlDataSource dataSource;
+
+	@Before
+	public void beforeTest() throws IOException {
+		databaseFile = File.createTempFile("etl-test", ".db");
+		ServiceMeta serviceMeta = new ServiceMeta(ServiceType.SQLITE);
+		serviceMeta.getProperties().put("name", "test");
+		serviceMeta.getProperties().put("jdbcUrl", "jdbc:sqlite:" + databaseFile.getAbsolutePath());
+		dataSource = new SqlDataSource(serviceMeta);
+	}
+
+	@After
+	public void afterTest() {
+		databaseFile.delete();
+	}
+
+	@Test
+	public void GivenDimensionTable_WhenLoad_ThenAllRowsIndexed() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE operator (id INTEGER PRIMARY KEY, name TEXT)");
+		for (int i = 1; i <= 2500; ++i) {
+			dataSource.execute("INSERT INTO operator (id, name) VALUES (?, ?)", i, "operator-" + i);
+		}
+
+		// when
+		LookupIndex index = new LookupIndex(dataSource, "operator", "id", "name", Long.MAX_VALUE);
+
+		// then
+		assertThat(index.size(), equalTo(2500));
+		assertThat(index.get(1), equalTo("operator-1"));
+		assertThat(index.get(2500), equalTo("operator-2500"));
+	}
+
+	@Test(expected = EtlException.class)
+	public void GivenMissingTable_WhenLoad_ThenException() {
+		// when
+		new LookupIndex(dataSource, "operator", "id", "name", Long.MAX_VALUE);
+	}
+
+	@Test(expected = EtlException.class)
+	public void GivenMissingColumn_WhenLoad_ThenException() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE operator (id INTEGER PRIMARY KEY, name TEXT)");
+		dataSource.execute("INSERT INTO operator (id, name) VALUES (?, ?)", 1, "operator-1");
+
+		// when
+		new LookupIndex(dataSource, "operator", "id", "label", Long.MAX_VALUE);
+	}
+
+	@Test
+	public void GivenNumericKeys_WhenNormalize_ThenIntegralValuesAsLong() {
+		// then
+		assertThat(LookupIndex.normalizeKey(7, true), equalTo((Object) 7L));
+		assertThat(LookupIndex.normalizeKey(7L, true), equalTo((Object) 7L));
+		assertThat(LookupIndex.normalizeKey((short) 7, true), equalTo((Object) 7L));
+		assertThat(LookupIndex.normalizeKey(BigInteger.valueOf(7), true), equalTo((Object) 7L));
+		assertThat(LookupIndex.normalizeKey(new BigDecimal("7.00"), true), equalTo((Object) 7L));
+		assertThat(LookupIndex.normalizeKey("007", true), equalTo((Object) 7L));
+		assertThat(LookupIndex.normalizeKey(" 7 ", true), equalTo((Object) 7L));
+	}
+
+	@Test
+	public void GivenNotIntegralKeysForNumericColumn_WhenNormalize_ThenString() {
+		// then
+		assertThat(LookupIndex.normalizeKey(new BigDecimal("7.50"), true), equalTo((Object) "7.5"));
+		assertThat(LookupIndex.normalizeKey(BigInteger.ONE.shiftLeft(64), true), equalTo((Object) "18446744073709551616"));
+		assertThat(LookupIndex.normalizeKey("RO-7", true), equalTo((Object) "RO-7"));
+	}
+
+	@Test
+	public void GivenStringKeys_WhenNormalize_ThenStringRepresentation() {
+		// then
+		assertThat(LookupIndex.normalizeKey(7, false), equalTo((Object) "7"));
+		assertThat(LookupIndex.normalizeKey(7L, false), equalTo((Object) "7"));
+		assertThat(LookupIndex.normalizeKey(new BigDecimal("7.00"), false), equalTo((Object) "7"));
+		assertThat(LookupIndex.normalizeKey("007", false), equalTo((Object) "007"));
+		assertThat(LookupIndex.normalizeKey(" RO-7 ", false), equalTo((Object) "RO-7"));
+	}
+
+	@Test
+	public void GivenNullKey_WhenNormalize_ThenNull() {
+		// then
+		assertThat(LookupIndex.normalizeKey(null, true), nullValue());
+		assertThat(LookupIndex.normalizeKey(null, false), nullValue());
+	}
+
+	@Test
+	public void GivenNumericKeyColumn_WhenGetWithOtherKeyTypes_ThenFound() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE operator (id INTEGER PRIMARY KEY, name TEXT)");
+		dataSource.execute("INSERT INTO operator (id, name) VALUES (?, ?)", 7, "operator-7");
+		LookupIndex index = new LookupIndex(dataSource, "operator", "id", "name", Long.MAX_VALUE);
+
+		// then
+		assertThat(index.get(7), equalTo("operator-7"));
+		assertThat(index.get(7L), equalTo("operator-7"));
+		assertThat(index.get("007"), equalTo("operator-7"));
+		assertThat(index.get(new BigDecimal("7.0")), equalTo("operator-7"));
+		assertThat(index.get(8), nullValue());
+		assertThat(index.get(null), nullValue());
+	}
+
+	@Test
+	public void GivenStringKeyColumn_WhenGetWithNumber_ThenMatchedByString() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE operator (code TEXT PRIMARY KEY, name TEXT)");
+		dataSource.execute("INSERT INTO operator (code, name) VALUES (?, ?)", "007", "operator-007");
+		dataSource.execute("INSERT INTO operator (code, name) VALUES (?, ?)", "8", "operator-8");
+		LookupIndex index = new LookupIndex(dataSource, "operator", "code", "name", Long.MAX_VALUE);
+
+		// then
+		assertThat(index.get("007"), equalTo("operator-007"));
+		assertThat(index.get(7), nullValue());
+		assertThat(index.get(8), equalTo("operator-8"));
+	}
+
+	@Test
+	public void GivenNullValue_WhenGet_ThenNull() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE operator (id INTEGER PRIMARY KEY, name TEXT)");
+		dataSource.execute("INSERT INTO operator (id, name) VALUES (?, ?)", 7, null);
+
+		// when
+		LookupIndex index = new LookupIndex(dataSource, "operator", "id", "name", Long.MAX_VALUE);
+
+		// then
+		assertThat(index.size(), equalTo(1));
+		assertThat(index.get(7), nullValue());
+	}
+
+	@Test(expected = EtlException.class)
+	public void GivenTableAboveMemoryBudget_WhenLoad_ThenException() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE operator (id INTEGER PRIMARY KEY, name TEXT)");
+		for (int i = 1; i <= 100; ++i) {
+			dataSource.execute("INSERT INTO operator (id, name) VALUES (?, ?)", i, "operator-" + i);
+		}
+
+		// when
+		new LookupIndex(dataSource, "operator", "id", "name", 4096);
+	}
+
+	@Test
+	public void GivenTableWithinMemoryBudget_WhenLoad_ThenLoaded() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE operator (id INTEGER PRIMARY KEY, name TEXT)");
+		for (int i = 1; i <= 100; ++i) {
+			dataSource.execute("INSERT INTO operator (id, name) VALUES (?, ?)", i, "operator-" + i);
+		}
+
+		// when
+		LookupIndex index = new LookupIndex(dataSource, "operator", "id", "name", 65536);
+
+		// then
+		assertThat(index.size(), equalTo(100));
+	}
+}
@@ -0,0 +1,423 @@
+package com.jslib.etl.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.etl.DataRecord;
+import com.jslib.etl.IExtractor;
+import com.jslib.etl.ILoader;
+import com.jslib.etl.RecordBatch;
+import com.jslib.etl.meta.MetaProperties;
+import com.jslib.etl.meta.ServiceMeta;
+import com.jslib.etl.meta.ServiceType;
+
+/**
+ * SQL data source tests against a SQLite database file, created for every test.
+ *
+ * @author Iulian Rotaru
+ */
+public class SqlDataSourceTest {
+	private File databaseFile;
+	private SqlDataSource dataSource;
+
+	@Before
+	public void beforeTest() throws IOException {
+		databaseFile = File.createTempFile("etl-test", ".db");
+		dataSource = dataSource();
+	}
+
+	@After
+	public void afterTest() {
+		databaseFile.delete();
+	}
+
+	@Test
+	public void GivenIntegerAboveIntRange_WhenStreamBatches_ThenLongVector() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY, counter INTEGER)");
+		dataSource.execute("INSERT INTO mission (id, counter) VALUES (?, ?)", 5000000000L, 1);
+
+		// when
+		RecordBatch batch;
+		try (IExtractor extractor = dataSource.extractor("mission", Arrays.asList("id", "counter"), properties("extractorMode", "stream"))) {
+			batch = extractor.batches(10).next();
+		}
+
+		// then
+		assertThat(batch.size(), equalTo(1));
+		assertThat(batch.type(0), equalTo(RecordBatch.VectorType.LONG));
+		assertThat(batch.longs(0)[0], equalTo(5000000000L));
+		assertThat(batch.get(1, 0), equalTo((Object) 1L));
+	}
+
+	@Test
+	public void GivenIntegerAboveIntRange_WhenStreamRecords_ThenValuePreserved() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY)");
+		dataSource.execute("INSERT INTO mission (id) VALUES (?)", 5000000000L);
+
+		// when
+		DataRecord record;
+		try (IExtractor extractor = dataSource.extractor("mission", Arrays.asList("id"), properties("extractorMode", "stream"))) {
+			Iterator<DataRecord> iterator = extractor.iterator();
+			record = iterator.next();
+		}
+
+		// then
+		assertThat(((Number) record.get(0)).longValue(), equalTo(5000000000L));
+	}
+
+	@Test
+	public void GivenRangeLargerThanPartitions_WhenIntegralRanges_ThenContiguousRanges() {
+		// given
+		BigInteger lower = BigInteger.valueOf(1);
+		BigInteger upper = BigInteger.valueOf(10);
+
+		// when
+		List<Object[]> ranges = SqlDataSource.integralRanges(lower, upper, 3, BigInteger::longValue);
+
+		// then
+		assertThat(ranges.size(), equalTo(3));
+		assertThat(ranges.get(0), equalTo(new Object[] { 1L, 4L }));
+		assertThat(ranges.get(1), equalTo(new Object[] { 4L, 7L }));
+		assertThat(ranges.get(2), equalTo(new Object[] { 7L, 10L }));
+	}
+
+	@Test
+	public void GivenRangeSmallerThanPartitions_WhenIntegralRanges_ThenOneValuePerRange() {
+		// when
+		List<Object[]> ranges = SqlDataSource.integralRanges(BigInteger.valueOf(5), BigInteger.valueOf(6), 4, BigInteger::longValue);
+
+		// then
+		assertThat(ranges.size(), equalTo(1));
+		assertThat(ranges.get(0), equalTo(new Object[] { 5L, 6L }));
+	}
+
+	@Test
+	public void GivenSingleValue_WhenIntegralRanges_ThenSingleRange() {
+		// when
+		List<Object[]> ranges = SqlDataSource.integralRanges(BigInteger.TEN, BigInteger.TEN, 4, BigInteger::longValue);
+
+		// then
+		assertThat(ranges.size(), equalTo(1));
+		assertThat(ranges.get(0), equalTo(new Object[] { 10L, 10L }));
+	}
+
+	@Test
+	public void GivenLongLimits_WhenIntegralRanges_ThenNoOverflow() {
+		// given
+		BigInteger lower = BigInteger.valueOf(Long.MIN_VALUE);
+		BigInteger upper = BigInteger.valueOf(Long.MAX_VALUE);
+
+		// when
+		List<Object[]> ranges = SqlDataSource.integralRanges(lower, upper, 4, BigInteger::longValue);
+
+		// then
+		assertThat(ranges.size(), equalTo(4));
+		assertThat(ranges.get(0)[0], equalTo((Object) Long.MIN_VALUE));
+		for (int i = 1; i < ranges.size(); ++i) {
+			assertThat(ranges.get(i)[0], equalTo(ranges.get(i - 1)[1]));
+			assertThat((Long) ranges.get(i)[0] > (Long) ranges.get(i - 1)[0], equalTo(true));
+		}
+		assertThat(ranges.get(3)[1], equalTo((Object) Long.MAX_VALUE));
+	}
+
+	@Test
+	public void GivenNullAndMaxValues_WhenPartitionedExtract_ThenAllRows() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY, score REAL)");
+		for (int i = 1; i <= 10; ++i) {
+			dataSource.execute("INSERT INTO mission (id, score) VALUES (?, ?)", i, i + 0.25);
+		}
+		dataSource.execute("INSERT INTO mission (id, score) VALUES (?, ?)", 11, null);
+
+		// when
+		Set<Object> ids = extract("mission", "score", 3);
+
+		// then
+		assertThat(ids.size(), equalTo(11));
+	}
+
+	@Test
+	public void GivenIntegerPrimaryKey_WhenPartitionedExtract_ThenMinAndMaxRows() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY)");
+		for (int i = 1; i <= 10; ++i) {
+			dataSource.execute("INSERT INTO mission (id) VALUES (?)", i);
+		}
+
+		// when
+		Set<Object> ids = extract("mission", null, 4);
+
+		// then
+		assertThat(ids.size(), equalTo(10));
+		assertThat(ids.contains(1L) || ids.contains(1), equalTo(true));
+		assertThat(ids.contains(10L) || ids.contains(10), equalTo(true));
+	}
+
+	@Test
+	public void GivenOnlyNullValues_WhenPartitionedExtract_ThenAllRows() throws SQLException {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY, score REAL)");
+		dataSource.execute("INSERT INTO mission (id, score) VALUES (?, ?)", 1, null);
+		dataSource.execute("INSERT INTO mission (id, score) VALUES (?, ?)", 2, null);
+
+		// when
+		Set<Object> ids = extract("mission", "score", 3);
+
+		// then
+		assertThat(ids.size(), equalTo(2));
+	}
+
+	@Test
+	public void GivenDuplicatedKeys_WhenMultiRowLoad_ThenOnlyDuplicatesDropped() throws Exception {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY, code TEXT UNIQUE)");
+		dataSource.execute("INSERT INTO mission (code) VALUES (?)", "X");
+
+		// when
+		load(dataSource, "multi-row", "A", "B", "X", "C", "A", "D");
+
+		// then
+		assertThat(codes(), equalTo(new HashSet<>(Arrays.asList("A", "B", "C", "D", "X"))));
+	}
+
+	@Test
+	public void GivenDuplicatedKeys_WhenBatchLoad_ThenOnlyDuplicatesDropped() throws Exception {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY, code TEXT UNIQUE)");
+		dataSource.execute("INSERT INTO mission (code) VALUES (?)", "X");
+
+		// when
+		load(dataSource, "batch", "A", "B", "X", "C", "A", "D");
+
+		// then
+		assertThat(codes(), equalTo(new HashSet<>(Arrays.asList("A", "B", "C", "D", "X"))));
+	}
+
+	@Test
+	public void GivenDuplicatedKeysAndTransaction_WhenMultiRowLoad_ThenOnlyDuplicatesDropped() throws Exception {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY, code TEXT UNIQUE)");
+		dataSource.execute("INSERT INTO mission (code) VALUES (?)", "X");
+		SqlDataSource transactionalDataSource = dataSource("commitInterval", "4", "batchSize", "3");
+
+		// when
+		load(transactionalDataSource, "multi-row", "A", "B", "X", "C", "A", "D", "E");
+
+		// then
+		assertThat(codes(), equalTo(new HashSet<>(Arrays.asList("A", "B", "C", "D", "E", "X"))));
+	}
+
+	@Test
+	public void GivenDuplicatedKeysAndTransaction_WhenBatchLoad_ThenOnlyDuplicatesDropped() throws Exception {
+		// given
+		dataSource.execute("CREATE TABLE mission (id INTEGER PRIMARY KEY, code TEXT UNIQUE)");
+		dataSource.execute("INSERT INTO mission (code) VALUES (?)", "X");
+		SqlDataSource transactionalDataSource = dataSource("commitInterval", "4", "batchSize", "3");
+
+		// when
+		load(transactionalDataSource, "batch", "A", "B", "X", "C", "A", "D", "E");
+
+		// then
+		assertThat(codes(), equalTo(new HashSet<>(Arrays.asList("A", "B", "C", "D", "E", "X"))));
+	}
+
+	@Test
+	public void GivenUtilDate_WhenCopyText_ThenIsoTimestamp() {
+		// given
+		LocalDateTime dateTime = LocalDateTime.of(2022, 10, 18, 14, 30, 15);
+		Date date = Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+
+		// when
+		String text = SqlDataSource.copyText(date);
+
+		// then
+		assertThat(text, equalTo("2022-10-18T14:30:15"));
+	}
+
+	@Test
+	public void GivenTimestampWithMicros_WhenCopyText_ThenIsoTimestampWithFraction() {
+		// when
+		String text = SqlDataSource.copyText(Timestamp.valueOf("2022-10-18 14:30:15.123456"));
+
+		// then
+		assertThat(text, equalTo("2022-10-18T14:30:15.123456"));
+	}
+
+	@Test
+	public void GivenBooleanAndDecimal_WhenCopyText_ThenServerFormat() {
+		// then
+		assertThat(SqlDataSource.copyText(true), equalTo("t"));
+		assertThat(SqlDataSource.copyText(false), equalTo("f"));
+		assertThat(SqlDataSource.copyText(new BigDecimal("1E+3")), equalTo("1000"));
+		assertThat(SqlDataSource.copyText(java.sql.Date.valueOf("2022-10-18")), equalTo("2022-10-18"));
+	}
+
+	@Test
+	public void GivenDecimal_WhenWriteBinaryNumeric_ThenBase10000Digits() throws SQLException {
+		// when
+		byte[] bytes = binary(new BigDecimal("123.45"), Types.NUMERIC, "numeric");
+
+		// then
+		// digits count, weight, sign, display scale and digits
+		assertThat(bytes, equalTo(shorts(2, 0, 0x0000, 2, 123, 4500)));
+	}
+
+	@Test
+	public void GivenNegativeFraction_WhenWriteBinaryNumeric_ThenNegativeWeight() throws SQLException {
+		// when
+		byte[] bytes = binary(new BigDecimal("-0.001"), Types.NUMERIC, "numeric");
+
+		// then
+		assertThat(bytes, equalTo(shorts(1, -1, 0x4000, 3, 10)));
+	}
+
+	@Test
+	public void GivenLong_WhenWriteBinaryNumeric_ThenTrailingZeroDigitsSkipped() throws SQLException {
+		// when
+		byte[] bytes = binary(100000L, Types.NUMERIC, "numeric");
+
+		// then
+		assertThat(bytes, equalTo(shorts(1, 1, 0x0000, 0, 10)));
+	}
+
+	@Test
+	public void GivenZero_WhenWriteBinaryNumeric_ThenNoDigits() throws SQLException {
+		// when
+		byte[] bytes = binary(BigDecimal.ZERO, Types.NUMERIC, "numeric");
+
+		// then
+		assertThat(bytes, equalTo(shorts(0, 0, 0x0000, 0)));
+	}
+
+	@Test
+	public void GivenInteger_WhenWriteBinaryBigint_ThenEightBytes() throws SQLException {
+		// when
+		byte[] bytes = binary(7, Types.BIGINT, "int8");
+
+		// then
+		assertThat(bytes, equalTo(ByteBuffer.allocate(12).putInt(8).putLong(7).array()));
+	}
+
+	@Test
+	public void GivenLong_WhenWriteBinaryText_ThenUtf8Text() throws SQLException {
+		// when
+		byte[] bytes = binary(42L, Types.VARCHAR, "text");
+
+		// then
+		assertThat(bytes, equalTo(ByteBuffer.allocate(6).putInt(2).put((byte) '4').put((byte) '2').array()));
+	}
+
+	@Test
+	public void GivenUtilDate_WhenWriteBinaryTimestamp_ThenMicrosFromPostgreSqlEpoch() throws SQLException {
+		// given
+		LocalDateTime dateTime = LocalDateTime.of(2000, 1, 1, 0, 0, 1);
+		Date date = Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+
+		// when
+		byte[] bytes = binary(date, Types.TIMESTAMP, "timestamp");
+
+		// then
+		assertThat(bytes, equalTo(ByteBuffer.allocate(12).putInt(8).putLong(1000000L).array()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void GivenValueOutOfRange_WhenWriteBinarySmallint_ThenException() throws SQLException {
+		binary(100000, Types.SMALLINT, "int2");
+	}
+
+	@Test(expected = SQLException.class)
+	public void GivenIntervalColumn_WhenWriteBinaryValue_ThenException() throws SQLException {
+		binary("1 day", Types.OTHER, "interval");
+	}
+
+	private static byte[] binary(Object value, int type, String typeName) throws SQLException {
+		SqlDataSource.CopyBuffer buffer = new SqlDataSource.CopyBuffer();
+		SqlDataSource.writeBinaryValue(buffer, value, new SqlDataSource.ColumnType(type, typeName));
+		return buffer.toByteArray();
+	}
+
+	/** Binary COPY field with given 16 bits values, preceded by field length. */
+	private static byte[] shorts(int... values) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 2 * values.length);
+		buffer.putInt(2 * values.length);
+		for (int value : values) {
+			buffer.putShort((short) value);
+		}
+		return buffer.array();
+	}
+
+	private static void load(SqlDataSource dataSource, String loaderMode, String... codes) throws Exception {
+		try (ILoader loader = dataSource.loader("mission", properties("loaderMode", loaderMode))) {
+			for (String code : codes) {
+				DataRecord record = new DataRecord();
+				record.put("code", code);
+				loader.write(record);
+			}
+		}
+	}
+
+	private Set<Object> codes() {
+		Set<Object> codes = new HashSet<>();
+		try (IExtractor extractor = dataSource.extractor("mission", Arrays.asList("code"), properties("extractorMode", "stream"))) {
+			for (DataRecord record : extractor) {
+				codes.add(record.get(0));
+			}
+		}
+		return codes;
+	}
+
+	private SqlDataSource dataSource(String... properties) {
+		ServiceMeta serviceMeta = new ServiceMeta(ServiceType.SQLITE);
+		serviceMeta.getProperties().put("name", "test");
+		serviceMeta.getProperties().put("jdbcUrl", "jdbc:sqlite:" + databaseFile.getAbsolutePath());
+		for (int i = 0; i < properties.length; i += 2) {
+			serviceMeta.getProperties().put(properties[i], properties[i + 1]);
+		}
+		return new SqlDataSource(serviceMeta);
+	}
+
+	private Set<Object> extract(String tableName, String partitionColumn, int partitions) {
+		MetaProperties properties = properties("extractorMode", "partition", "extractorPartitions", Integer.toString(partitions));
+		if (partitionColumn != null) {
+			properties.put("extractorPartitionColumn", partitionColumn);
+		}
+		Set<Object> ids = new HashSet<>();
+		try (IExtractor extractor = dataSource.extractor(tableName, Arrays.asList("id"), properties)) {
+			for (DataRecord record : extractor) {
+				ids.add(record.get(0));
+			}
+		}
+		return ids;
+	}
+
+	private static MetaProperties properties(String... nameValues) {
+		MetaProperties properties = new MetaProperties();
+		for (int i = 0; i < nameValues.length; i += 2) {
+			properties.put(nameValues[i], nameValues[i + 1]);
+		}
+		return properties;
+	}
+}
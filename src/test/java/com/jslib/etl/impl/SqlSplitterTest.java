@@ -0,0 +1,126 @@
+package com.jslib.etl.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * SQL script splitting tests, with standard and MySQL lexical rules.
+ *
+ * @author Iulian Rotaru
+ */
+public class SqlSplitterTest {
+	@Test
+	public void GivenStatements_WhenSplit_ThenTrimmedWithoutTerminators() {
+		// when
+		List<String> statements = SqlSplitter.split(" DELETE FROM a ;\n\nDELETE FROM b;;  ");
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("DELETE FROM a", "DELETE FROM b")));
+	}
+
+	@Test
+	public void GivenNullScript_WhenSplit_ThenEmpty() {
+		// then
+		assertThat(SqlSplitter.split(null), equalTo(Collections.emptyList()));
+	}
+
+	@Test
+	public void GivenTerminatorInQuotes_WhenSplit_ThenNotSplit() {
+		// when
+		List<String> statements = SqlSplitter.split("INSERT INTO a VALUES('x; y', 'it''s; z');SELECT \"a;b\" FROM c");
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("INSERT INTO a VALUES('x; y', 'it''s; z')", "SELECT \"a;b\" FROM c")));
+	}
+
+	@Test
+	public void GivenComments_WhenSplit_ThenCommentsRemoved() {
+		// when
+		List<String> statements = SqlSplitter.split("-- first; comment\nDELETE/* block; comment */FROM a; -- trailing\n/* only comment; */");
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("DELETE FROM a")));
+	}
+
+	@Test
+	public void GivenCommentMarkersInQuotes_WhenSplit_ThenKept() {
+		// when
+		List<String> statements = SqlSplitter.split("SELECT '-- x', '/* y */' FROM a");
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("SELECT '-- x', '/* y */' FROM a")));
+	}
+
+	@Test
+	public void GivenDollarQuotedBody_WhenSplit_ThenNotSplit() {
+		// given
+		String function = "CREATE FUNCTION f() RETURNS void AS $$ BEGIN DELETE FROM a; END; $$ LANGUAGE plpgsql";
+		String block = "DO $body$ BEGIN PERFORM '$$;'; END $body$";
+
+		// when
+		List<String> statements = SqlSplitter.split(function + ";\n" + block + ";");
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList(function, block)));
+	}
+
+	@Test
+	public void GivenVariableAndPositionalParameter_WhenSplit_ThenNotDollarQuote() {
+		// when
+		List<String> statements = SqlSplitter.split("DELETE FROM a WHERE id=$id; DELETE FROM b WHERE id=$1 OR id=$2");
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("DELETE FROM a WHERE id=$id", "DELETE FROM b WHERE id=$1 OR id=$2")));
+	}
+
+	@Test
+	public void GivenBackslashEscapedQuote_WhenSplitMySql_ThenNotSplit() {
+		// when
+		List<String> statements = SqlSplitter.split("INSERT INTO a VALUES('it\\'s; x', \"say \\\"a;b\\\"\", 'c:\\\\');DELETE FROM b", true);
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("INSERT INTO a VALUES('it\\'s; x', \"say \\\"a;b\\\"\", 'c:\\\\')", "DELETE FROM b")));
+	}
+
+	@Test
+	public void GivenHashComment_WhenSplitMySql_ThenCommentRemoved() {
+		// when
+		List<String> statements = SqlSplitter.split("# first; comment\nDELETE FROM a; # trailing; comment\nDELETE FROM b", true);
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("DELETE FROM a", "DELETE FROM b")));
+	}
+
+	@Test
+	public void GivenDoubleDashWithoutSpace_WhenSplitMySql_ThenNotComment() {
+		// when
+		List<String> statements = SqlSplitter.split("UPDATE a SET x=1--1; -- comment\nDELETE FROM b", true);
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("UPDATE a SET x=1--1", "DELETE FROM b")));
+	}
+
+	@Test
+	public void GivenBackQuotedIdentifier_WhenSplitMySql_ThenNotSplit() {
+		// when
+		List<String> statements = SqlSplitter.split("SELECT `a;b` FROM c; SELECT `d` FROM e", true);
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("SELECT `a;b` FROM c", "SELECT `d` FROM e")));
+	}
+
+	@Test
+	public void GivenDollarsInIdentifiers_WhenSplitMySql_ThenNotDollarQuote() {
+		// when
+		List<String> statements = SqlSplitter.split("DELETE FROM a$b$c; DELETE FROM d", true);
+
+		// then
+		assertThat(statements, equalTo(Arrays.asList("DELETE FROM a$b$c", "DELETE FROM d")));
+	}
+}
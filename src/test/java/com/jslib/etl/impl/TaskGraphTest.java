@@ -0,0 +1,250 @@
+package com.jslib.etl.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.etl.EtlException;
+import com.jslib.etl.ITask;
+import com.jslib.etl.meta.ParserFactory;
+import com.jslib.etl.meta.TaskMeta;
+
+/**
+ * Task graph tests on tasks parsed from ETL markdown. Tasks record their start and end events; independent tasks wait
+ * for each other in order to prove they run concurrently.
+ *
+ * @author Iulian Rotaru
+ */
+public class TaskGraphTest {
+	private List<String> events;
+
+	@Before
+	public void beforeTest() {
+		events = Collections.synchronizedList(new ArrayList<>());
+	}
+
+	@Test
+	public void GivenTaskReadingTableWrittenByPreviousTask_WhenExecute_ThenRunsAfterIt() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "| Extract - source.operator | Transform | Load - stage.operator |", "| id | integer | id |", "", //
+				"# B", "| Extract - stage.operator | Transform | Load - target.operator |", "| id | integer | id |");
+		TaskGraph graph = new TaskGraph(tasksMeta, tasks("A", "B"), Collections.emptyList(), Collections.emptyList());
+
+		// when
+		boolean result = graph.execute(2);
+
+		// then
+		assertThat(result, equalTo(true));
+		assertThat(events, equalTo(Arrays.asList("start A", "end A", "start B", "end B")));
+	}
+
+	@Test
+	public void GivenTasksWritingSameTable_WhenExecute_ThenRunInOrder() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "| Extract - source.operator | Transform | Load - target.operator |", "| id | integer | id |", "", //
+				"# B", "| Extract - source.mission | Transform | Load - target.operator |", "| id | integer | id |");
+		TaskGraph graph = new TaskGraph(tasksMeta, tasks("A", "B"), Collections.emptyList(), Collections.emptyList());
+
+		// when
+		graph.execute(2);
+
+		// then
+		assertThat(events, equalTo(Arrays.asList("start A", "end A", "start B", "end B")));
+	}
+
+	@Test
+	public void GivenIndependentTasks_WhenExecute_ThenRunConcurrently() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "| Extract - source.operator | Transform | Load - target.operator |", "| id | integer | id |", "", //
+				"# B", "| Extract - source.mission | Transform | Load - target.mission |", "| id | integer | id |");
+		CountDownLatch latch = new CountDownLatch(2);
+		List<ITask> tasks = Arrays.asList(new ConcurrentTask("A", latch), new ConcurrentTask("B", latch));
+		TaskGraph graph = new TaskGraph(tasksMeta, tasks, Collections.emptyList(), Collections.emptyList());
+
+		// when
+		boolean result = graph.execute(2);
+
+		// then
+		assertThat(result, equalTo(true));
+	}
+
+	@Test
+	public void GivenTransformerReadingTableWrittenByPreviousTask_WhenExecute_ThenRunsAfterIt() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "| Extract - source.operator | Transform | Load - target.operator |", "| id | integer | id |", "", //
+				"# B", "| Extract - source.mission | Transform | Load - target.mission |", "| operator | last inserted ID from target.operator | operator |");
+		TaskGraph graph = new TaskGraph(tasksMeta, tasks("A", "B"), Collections.emptyList(), Collections.emptyList());
+
+		// when
+		graph.execute(2);
+
+		// then
+		assertThat(events, equalTo(Arrays.asList("start A", "end A", "start B", "end B")));
+	}
+
+	@Test
+	public void GivenVariableEvaluatedByPreviousTask_WhenExecute_ThenRunsAfterIt() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "| Extract - source.operator | Transform | Load - target.operator |", "| id | integer | id |", "", //
+				"# B", "- extractor filter: id > $maxId", "", "| Extract - source.mission | Transform | Load - target.mission |", "| id | integer | id |");
+		List<Variable> variables = Arrays.asList(new Variable("maxId", "SELECT max(id) FROM source.audit", Variable.Type.POST_TASK, "A"));
+		TaskGraph graph = new TaskGraph(tasksMeta, tasks("A", "B"), variables, Collections.emptyList());
+
+		// when
+		graph.execute(2);
+
+		// then
+		assertThat(events, equalTo(Arrays.asList("start A", "end A", "start B", "end B")));
+	}
+
+	@Test
+	public void GivenScriptWritingTableReadByNextTask_WhenExecute_ThenRunsAfterIt() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "| Extract - source.operator | Transform | Load - target.operator |", "| id | integer | id |", "", //
+				"# B", "| Extract - source.audit | Transform | Load - target.mission |", "| id | integer | id |");
+		List<Script> scripts = Arrays.asList(new Script(Script.Language.SQL, "DELETE FROM source.audit", false, Scope.POST_TASK, "A"));
+		TaskGraph graph = new TaskGraph(tasksMeta, tasks("A", "B"), Collections.emptyList(), scripts);
+
+		// when
+		graph.execute(2);
+
+		// then
+		assertThat(events, equalTo(Arrays.asList("start A", "end A", "start B", "end B")));
+	}
+
+	@Test
+	public void GivenExplicitDependency_WhenExecute_ThenRunsAfterIt() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "- depends on: B", "", "| Extract - source.operator | Transform | Load - target.operator |", "| id | integer | id |", "", //
+				"# B", "| Extract - source.mission | Transform | Load - target.mission |", "| id | integer | id |");
+		TaskGraph graph = new TaskGraph(tasksMeta, tasks("A", "B"), Collections.emptyList(), Collections.emptyList());
+
+		// when
+		graph.execute(2);
+
+		// then
+		assertThat(events, equalTo(Arrays.asList("start B", "end B", "start A", "end A")));
+	}
+
+	@Test(expected = EtlException.class)
+	public void GivenExplicitDependencyOnMissingTask_WhenCreate_ThenException() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "- depends on: C", "", "| Extract - source.operator | Transform | Load - target.operator |", "| id | integer | id |");
+
+		// when
+		new TaskGraph(tasksMeta, tasks("A"), Collections.emptyList(), Collections.emptyList());
+	}
+
+	@Test
+	public void GivenCircularDependencies_WhenExecute_ThenException() throws Exception {
+		// given
+		List<TaskMeta> tasksMeta = tasksMeta( //
+				"# A", "- depends on: B", "", "| Extract - source.operator | Transform | Load - stage.operator |", "| id | integer | id |", "", //
+				"# B", "| Extract - stage.operator | Transform | Load - target.operator |", "| id | integer | id |");
+		TaskGraph graph = new TaskGraph(tasksMeta, tasks("A", "B"), Collections.emptyList(), Collections.emptyList());
+
+		// when
+		EtlException exception = null;
+		try {
+			graph.execute(2);
+		} catch (EtlException e) {
+			exception = e;
+		}
+
+		// then
+		assertThat(exception != null, equalTo(true));
+		assertThat(exception.getMessage(), equalTo("Circular dependencies between tasks."));
+		assertThat(events, equalTo(Collections.emptyList()));
+	}
+
+	private static List<TaskMeta> tasksMeta(String... lines) throws IOException {
+		return new ParserFactory().create("test.md").parse(new StringReader(String.join("\n", lines))).getTasksMeta();
+	}
+
+	private List<ITask> tasks(String... names) {
+		List<ITask> tasks = new ArrayList<>();
+		for (String name : names) {
+			tasks.add(new RecordingTask(name));
+		}
+		return tasks;
+	}
+
+	/**
+	 * Task recording its start and end events. Task lasts long enough for a not dependent task to start meanwhile.
+	 *
+	 * @author Iulian Rotaru
+	 */
+	private class RecordingTask implements ITask {
+		private final String name;
+
+		RecordingTask(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public boolean execute() {
+			events.add("start " + name);
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				return false;
+			}
+			events.add("end " + name);
+			return true;
+		}
+	}
+
+	/**
+	 * Task that succeeds only if all tasks sharing the latch are running at the same time.
+	 *
+	 * @author Iulian Rotaru
+	 */
+	private static class ConcurrentTask implements ITask {
+		private final String name;
+		private final CountDownLatch latch;
+
+		ConcurrentTask(String name, CountDownLatch latch) {
+			this.name = name;
+			this.latch = latch;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public boolean execute() {
+			latch.countDown();
+			try {
+				return latch.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+	}
+}
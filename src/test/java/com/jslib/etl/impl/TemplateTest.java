@@ -0,0 +1,133 @@
+package com.jslib.etl.impl;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jslib.converter.Converter;
+
+/**
+ * Template rendering tests, with variables values formatted by a converter that counts conversions.
+ *
+ * @author Iulian Rotaru
+ */
+public class TemplateTest {
+	private Map<String, Variable> variables;
+	private Converter converter;
+
+	@Before
+	public void beforeTest() {
+		variables = new HashMap<>();
+		converter = mock(Converter.class);
+		when(converter.asString(any())).thenAnswer(invocation -> String.valueOf((Object) invocation.getArgument(0)));
+	}
+
+	@Test
+	public void GivenVariables_WhenRender_ThenSubstituted() {
+		// given
+		variables.put("id", new Variable("id", 7));
+		variables.put("name", new Variable("name", "mission"));
+		Template template = new Template("SELECT * FROM $name WHERE id=$id AND parent=$id");
+
+		// when
+		String text = template.render(variables::get, converter);
+
+		// then
+		assertThat(text, equalTo("SELECT * FROM mission WHERE id=7 AND parent=7"));
+		assertThat(template.getVariableNames(), equalTo(Arrays.asList("name", "id", "id")));
+	}
+
+	@Test
+	public void GivenAdjacentVariablesAtTextEnds_WhenRender_ThenSubstituted() {
+		// given
+		variables.put("a", new Variable("a", "x"));
+		variables.put("b", new Variable("b", "y"));
+
+		// then
+		assertThat(new Template("$a$b").render(variables::get, converter), equalTo("xy"));
+		assertThat(new Template("$a").render(variables::get, converter), equalTo("x"));
+	}
+
+	@Test
+	public void GivenUndefinedVariable_WhenRender_ThenReferenceKept() {
+		// given
+		variables.put("id", new Variable("id", 7));
+
+		// when
+		String text = new Template("id=$id AND name=$name").render(variables::get, converter);
+
+		// then
+		assertThat(text, equalTo("id=7 AND name=$name"));
+	}
+
+	@Test
+	public void GivenValueWithReplacementCharacters_WhenRender_ThenValueKeptAsItIs() {
+		// given
+		variables.put("path", new Variable("path", "C:\\data\\$1"));
+		variables.put("price", new Variable("price", "$id"));
+
+		// when
+		String text = new Template("path='$path', price='$price'").render(variables::get, converter);
+
+		// then
+		assertThat(text, equalTo("path='C:\\data\\$1', price='$id'"));
+	}
+
+	@Test
+	public void GivenTextWithoutVariables_WhenRender_ThenSameTextWithoutConversion() {
+		// given
+		Template template = new Template("SELECT 1");
+
+		// when
+		String text = template.render(variables::get, converter);
+
+		// then
+		assertThat(text, equalTo("SELECT 1"));
+		assertThat(template.getVariableNames(), equalTo(Collections.emptyList()));
+		verify(converter, times(0)).asString(any());
+	}
+
+	@Test
+	public void GivenUnchangedValues_WhenRenderTwice_ThenConvertedOnce() {
+		// given
+		variables.put("id", new Variable("id", 7L));
+		Template template = new Template("id=$id");
+
+		// when
+		String first = template.render(variables::get, converter);
+		String second = template.render(variables::get, converter);
+
+		// then
+		assertThat(second, equalTo(first));
+		verify(converter, times(1)).asString(any());
+	}
+
+	@Test
+	public void GivenChangedValue_WhenRender_ThenRenderedAgain() {
+		// given
+		Variable variable = new Variable("id", 7L);
+		variables.put("id", variable);
+		Template template = new Template("id=$id");
+		template.render(variables::get, converter);
+
+		// when
+		variable.setValue(8L);
+		String text = template.render(variables::get, converter);
+
+		// then
+		assertThat(text, equalTo("id=8"));
+		verify(converter, times(2)).asString(any());
+	}
+}